@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.job;
+
+import android.test.AndroidTestCase;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives PeriodicSyncScheduler with fake clock, device state and
+ * randomness, and checks times at which the next attempt is scheduled.
+ */
+public class PeriodicSyncSchedulerTest extends AndroidTestCase {
+    // alarms set by tests are real, so they must not go off meanwhile
+    private static final long NOW = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365);
+    private static final long INTERVAL = TimeUnit.HOURS.toMillis(12);
+    private static final long MAX_JITTER = TimeUnit.HOURS.toMillis(1);
+    private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(30);
+
+    private FakeClock mClock;
+    private FakeDeviceState mDeviceState;
+    private FixedRandom mRandom;
+    private CountingSync mSync;
+    private PeriodicSyncScheduler mScheduler;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mClock = new FakeClock(NOW);
+        mDeviceState = new FakeDeviceState();
+        mRandom = new FixedRandom(0.5);
+        mSync = new CountingSync();
+        mScheduler = newScheduler(mRandom);
+        mScheduler.stop();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mScheduler.stop();
+        super.tearDown();
+    }
+
+    public void testStartSchedulesFirstRunAfterInterval() {
+        mScheduler.start();
+        assertEquals(NOW + INTERVAL + MAX_JITTER / 2, mScheduler.getNextRunTime());
+    }
+
+    public void testStartKeepsStoredRunTime() {
+        mScheduler.start();
+        long nextRunTime = mScheduler.getNextRunTime();
+
+        mClock.mTime += TimeUnit.HOURS.toMillis(1);
+        mScheduler.start();
+        assertEquals(nextRunTime, mScheduler.getNextRunTime());
+    }
+
+    public void testStopClearsNextRunTime() {
+        mScheduler.start();
+        mScheduler.stop();
+        assertEquals(0, mScheduler.getNextRunTime());
+    }
+
+    public void testAlarmRunsSyncWhenDeviceIsReady() {
+        assertTrue(mScheduler.onAlarm());
+        assertEquals(1, mSync.mRuns);
+        assertEquals(NOW, mScheduler.getLastRunTime());
+        assertEquals(NOW + INTERVAL + MAX_JITTER / 2, mScheduler.getNextRunTime());
+    }
+
+    public void testAlarmRetriesWithoutUnmeteredNetwork() {
+        mDeviceState.mUnmetered = false;
+        assertRetried();
+    }
+
+    public void testAlarmRetriesWhenNotCharging() {
+        mDeviceState.mCharging = false;
+        assertRetried();
+    }
+
+    public void testAlarmRetriesWhenNotIdle() {
+        mDeviceState.mIdle = false;
+        assertRetried();
+    }
+
+    public void testRetryIsFollowedByRunOnceDeviceIsReady() {
+        mDeviceState.mCharging = false;
+        assertFalse(mScheduler.onAlarm());
+
+        mClock.mTime = mScheduler.getNextRunTime();
+        mDeviceState.mCharging = true;
+        assertTrue(mScheduler.onAlarm());
+        assertEquals(1, mSync.mRuns);
+        assertEquals(mClock.mTime, mScheduler.getLastRunTime());
+        assertEquals(mClock.mTime + INTERVAL + MAX_JITTER / 2, mScheduler.getNextRunTime());
+    }
+
+    public void testJitterLowerBound() {
+        mRandom.mValue = 0.0;
+        mScheduler.onAlarm();
+        assertEquals(NOW + INTERVAL, mScheduler.getNextRunTime());
+    }
+
+    public void testJitterUpperBound() {
+        mRandom.mValue = Math.nextAfter(1.0, 0.0);
+        mScheduler.onAlarm();
+        assertTrue(mScheduler.getNextRunTime() < NOW + INTERVAL + MAX_JITTER);
+        assertTrue(mScheduler.getNextRunTime() >= NOW + INTERVAL + MAX_JITTER - 1);
+    }
+
+    public void testJitterStaysWithinBounds() {
+        mScheduler = newScheduler(new Random(42));
+        for (int i = 0; i < 1000; i++) {
+            mDeviceState.mIdle = i % 2 == 0;
+            long delay = mDeviceState.mIdle ? INTERVAL : RETRY_DELAY;
+
+            mScheduler.onAlarm();
+            long jitter = mScheduler.getNextRunTime() - mClock.mTime - delay;
+            assertTrue("jitter " + jitter, jitter >= 0 && jitter < MAX_JITTER);
+            mClock.mTime = mScheduler.getNextRunTime();
+        }
+    }
+
+    public void testZeroJitter() {
+        mScheduler.setInterval(INTERVAL, 0, RETRY_DELAY);
+        mRandom.mValue = 0.9;
+        mScheduler.onAlarm();
+        assertEquals(NOW + INTERVAL, mScheduler.getNextRunTime());
+    }
+
+    public void testInvalidIntervalIsRejected() {
+        try {
+            mScheduler.setInterval(0, MAX_JITTER, RETRY_DELAY);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        try {
+            mScheduler.setInterval(INTERVAL, -1, RETRY_DELAY);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private void assertRetried() {
+        assertFalse(mScheduler.onAlarm());
+        assertEquals(0, mSync.mRuns);
+        assertEquals(0, mScheduler.getLastRunTime());
+        assertEquals(NOW + RETRY_DELAY + MAX_JITTER / 2, mScheduler.getNextRunTime());
+    }
+
+    private PeriodicSyncScheduler newScheduler(Random random) {
+        // last run time is not cleared by stop()
+        getContext().getSharedPreferences("preferences:PeriodicSync", 0)
+                .edit().clear().commit();
+        PeriodicSyncScheduler scheduler = new PeriodicSyncScheduler(
+                getContext(), mSync, mDeviceState, mClock, random);
+        scheduler.setInterval(INTERVAL, MAX_JITTER, RETRY_DELAY);
+        return scheduler;
+    }
+
+    private static class FakeClock implements Clock {
+        private long mTime;
+
+        FakeClock(long time) {
+            mTime = time;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return mTime;
+        }
+    }
+
+    private static class FakeDeviceState implements DeviceState {
+        private boolean mUnmetered = true;
+        private boolean mCharging = true;
+        private boolean mIdle = true;
+
+        @Override
+        public boolean isOnUnmeteredNetwork() {
+            return mUnmetered;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return mCharging;
+        }
+
+        @Override
+        public boolean isIdle() {
+            return mIdle;
+        }
+    }
+
+    private static class FixedRandom extends Random {
+        private double mValue;
+
+        FixedRandom(double value) {
+            mValue = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return mValue;
+        }
+    }
+
+    private static class CountingSync implements Runnable {
+        private int mRuns;
+
+        @Override
+        public void run() {
+            mRuns++;
+        }
+    }
+}
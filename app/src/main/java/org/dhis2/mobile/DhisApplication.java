@@ -30,12 +30,22 @@ package org.dhis2.mobile;
 
 import android.app.Application;
 
+import com.squareup.otto.Subscribe;
+
+import org.dhis2.mobile.api.date.PeriodAvailabilityCache;
+import org.dhis2.mobile.api.job.PeriodicSyncScheduler;
+import org.dhis2.mobile.api.job.base.JobStore;
+import org.dhis2.mobile.api.job.base.PersistentJobQueue;
+import org.dhis2.mobile.api.models.MetaDataSyncResult;
 import org.dhis2.mobile.sdk.DhisManager;
+import org.dhis2.mobile.utils.DeliverOn;
 import org.dhis2.mobile.utils.EventBus;
+import org.dhis2.mobile.utils.ThreadMode;
 
 public class DhisApplication extends Application {
     private DhisService mDhisService;
     private DhisManager mDhisManager;
+    private PeriodicSyncScheduler mPeriodicSyncScheduler;
 
     @Override
     public void onCreate() {
@@ -43,7 +53,20 @@ public class DhisApplication extends Application {
 
         EventBus.register(this);
         mDhisManager = new DhisManager(getBaseContext());
-        mDhisService = new DhisService(mDhisManager);
+        mDhisService = new DhisService(getBaseContext(), mDhisManager,
+                new PersistentJobQueue(new JobStore(getBaseContext())));
+        mDhisService.resumeJobs();
+        mPeriodicSyncScheduler = new PeriodicSyncScheduler(this, mDhisService);
+        mPeriodicSyncScheduler.start();
+    }
+
+    /**
+     * Synchronized data sets could have changed their periods.
+     */
+    @Subscribe
+    @DeliverOn(ThreadMode.BACKGROUND)
+    public void onMetaDataSynced(MetaDataSyncResult result) {
+        PeriodAvailabilityCache.getInstance().clear();
     }
 
     public DhisService getDhisService() {
@@ -53,4 +76,8 @@ public class DhisApplication extends Application {
     public DhisManager getDhisManager() {
         return mDhisManager;
     }
+
+    public PeriodicSyncScheduler getPeriodicSyncScheduler() {
+        return mPeriodicSyncScheduler;
+    }
 }
@@ -28,15 +28,31 @@
 
 package org.dhis2.mobile;
 
+import android.content.Context;
 import android.net.Uri;
+import android.os.PowerManager;
 
+import org.dhis2.mobile.api.job.base.CoalescePolicy;
 import org.dhis2.mobile.api.job.base.Job;
+import org.dhis2.mobile.api.job.base.JobDescriptor;
 import org.dhis2.mobile.api.job.base.JobExecutor;
+import org.dhis2.mobile.api.job.base.JobFactory;
+import org.dhis2.mobile.api.job.base.JobPriority;
+import org.dhis2.mobile.api.job.base.JobType;
 import org.dhis2.mobile.api.job.base.NetworkJob;
+import org.dhis2.mobile.api.job.base.PersistentJobQueue;
+import org.dhis2.mobile.api.job.base.PersistentNetworkJob;
+import org.dhis2.mobile.api.models.MetaDataSyncResult;
 import org.dhis2.mobile.sdk.DhisManager;
 import org.dhis2.mobile.sdk.entities.UserAccount;
 import org.dhis2.mobile.sdk.network.APIException;
 import org.dhis2.mobile.sdk.network.models.Credentials;
+import org.dhis2.mobile.utils.EventBus;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
 
@@ -47,14 +63,29 @@ public final class DhisService {
 
     public static final int SYNC_META_DATA = 4;
 
+    private static final String SYNC_META_DATA_JOB_TYPE = "syncMetaData";
+    // retries are not awaited by anyone, so they can wait for other requests
+    private static final long RETRY_MAX_DELAY = TimeUnit.MINUTES.toMillis(2);
+
     private DhisManager mDhisManager;
+    private PersistentJobQueue mJobQueue;
+    private PowerManager.WakeLock mSyncWakeLock;
 
-    public DhisService(DhisManager dhisManager) {
+    public DhisService(Context context, DhisManager dhisManager, PersistentJobQueue jobQueue) {
+        isNull(context, "Context object must not be null");
         mDhisManager = isNull(dhisManager, "DhisManager must not be null");
+        mJobQueue = isNull(jobQueue, "PersistentJobQueue must not be null");
+
+        // sync started by alarm must not stop when device falls asleep
+        PowerManager powerManager = (PowerManager)
+                context.getSystemService(Context.POWER_SERVICE);
+        mSyncWakeLock = powerManager.newWakeLock(
+                PowerManager.PARTIAL_WAKE_LOCK, SYNC_META_DATA_JOB_TYPE);
+        mJobQueue.registerFactory(SYNC_META_DATA_JOB_TYPE, new DhisJobFactory());
     }
 
     public void logInUser(final Uri serverUri, final Credentials credentials) {
-        JobExecutor.enqueueJob(new NetworkJob<UserAccount>(LOG_IN_JOB_ID) {
+        JobExecutor.enqueueJob(new NetworkJob<UserAccount>(LOG_IN_JOB_ID, JobPriority.HIGH) {
 
             @Override
             public UserAccount execute() throws APIException {
@@ -64,7 +95,7 @@ public final class DhisService {
     }
 
     public void confirmUser(final Credentials credentials) {
-        JobExecutor.enqueueJob(new NetworkJob<UserAccount>(CONFIRM_USER_JOB_ID) {
+        JobExecutor.enqueueJob(new NetworkJob<UserAccount>(CONFIRM_USER_JOB_ID, JobPriority.HIGH) {
 
             @Override
             public UserAccount execute() throws APIException {
@@ -78,29 +109,97 @@ public final class DhisService {
         });
     }
 
-    // TODO we need to cancel all pending Jobs first
     public void logOutUser() {
-        JobExecutor.enqueueJob(new Job<Object>(LOG_OUT_JOB_ID) {
+        // there is no point in finishing work of user who is leaving
+        mJobQueue.clear();
+        JobExecutor.cancelAllJobs();
+        // results of leaving user must not reach screens of the next one
+        EventBus.removeStickyEvent(UserAccount.class);
+        EventBus.removeStickyEvent(MetaDataSyncResult.class);
+        EventBus.removeStickyEvent(APIException.class);
+        JobExecutor.enqueueJob(new Job<Object>(LOG_OUT_JOB_ID, JobType.DISK, JobPriority.HIGH) {
             @Override
             public Object inBackground() {
+                awaitMetaDataSync();
                 mDhisManager.logOutUser();
                 return new Object();
             }
         });
     }
 
+    /**
+     * Cancelled sync stops at its next checkpoint, but until then it can
+     * still write to database, so state of user is cleared only after it.
+     */
+    private void awaitMetaDataSync() {
+        Future<Object> sync = mDhisManager.getMetaDataSync();
+        if (sync == null) {
+            return;
+        }
+
+        try {
+            sync.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // failure of cancelled sync is expected
+        }
+    }
+
     public void syncMetaData() {
-        JobExecutor.enqueueJob(new NetworkJob<Object>(SYNC_META_DATA) {
+        mJobQueue.enqueue(SYNC_META_DATA, SYNC_META_DATA_JOB_TYPE, null);
+    }
 
-            @Override
-            public Object execute() throws APIException {
-                mDhisManager.syncMetaData();
-                return new Object();
-            }
-        });
+    /**
+     * Continues jobs interrupted by death of application process.
+     */
+    public void resumeJobs() {
+        mJobQueue.resume();
     }
 
     public boolean isJobRunning(int jobId) {
         return JobExecutor.isJobRunning(jobId);
     }
+
+    /**
+     * Recreates jobs which were stored in PersistentJobQueue.
+     */
+    private class DhisJobFactory implements JobFactory {
+
+        @Override
+        public Job<?> create(JobDescriptor descriptor, PersistentJobQueue queue) {
+            // there is no one to do the work for
+            if (!mDhisManager.isUserLoggedIn()) {
+                return null;
+            }
+
+            if (SYNC_META_DATA_JOB_TYPE.equals(descriptor.getType())) {
+                return new PersistentNetworkJob<MetaDataSyncResult>(descriptor, queue, JobPriority.LOW) {
+
+                    // request made during running sync should not be lost
+                    @Override
+                    public CoalescePolicy getCoalescePolicy() {
+                        return CoalescePolicy.REPLACE_PENDING;
+                    }
+
+                    @Override
+                    public long getMaxDelay() {
+                        return getDescriptor().getAttempts() > 0 ? RETRY_MAX_DELAY : 0;
+                    }
+
+                    @Override
+                    public MetaDataSyncResult execute() throws APIException {
+                        mSyncWakeLock.acquire();
+                        try {
+                            mDhisManager.syncMetaData();
+                        } finally {
+                            mSyncWakeLock.release();
+                        }
+                        return new MetaDataSyncResult(System.currentTimeMillis());
+                    }
+                };
+            }
+            return null;
+        }
+    }
 }
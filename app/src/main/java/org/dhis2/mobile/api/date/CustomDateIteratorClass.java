@@ -44,36 +44,6 @@ public abstract class CustomDateIteratorClass<T> implements CustomDateIterator<T
     protected static final int NOV = 11;
     protected static final int DEC = 12;
 
-    protected static final String JAN_STR;
-    protected static final String FEB_STR;
-    protected static final String MAR_STR;
-    protected static final String APR_STR;
-    protected static final String MAY_STR;
-    protected static final String JUN_STR;
-    protected static final String JUL_STR;
-    protected static final String AUG_STR;
-    protected static final String SEP_STR;
-    protected static final String OCT_STR;
-    protected static final String NOV_STR;
-    protected static final String DEC_STR;
-
-    static {
-        LocalDate lDate = new LocalDate();
-
-        JAN_STR = lDate.withMonthOfYear(JAN).monthOfYear().getAsShortText();
-        FEB_STR = lDate.withMonthOfYear(FEB).monthOfYear().getAsShortText();
-        MAR_STR = lDate.withMonthOfYear(MAR).monthOfYear().getAsShortText();
-        APR_STR = lDate.withMonthOfYear(APR).monthOfYear().getAsShortText();
-        MAY_STR = lDate.withMonthOfYear(MAY).monthOfYear().getAsShortText();
-        JUN_STR = lDate.withMonthOfYear(JUN).monthOfYear().getAsShortText();
-        JUL_STR = lDate.withMonthOfYear(JUL).monthOfYear().getAsShortText();
-        AUG_STR = lDate.withMonthOfYear(AUG).monthOfYear().getAsShortText();
-        SEP_STR = lDate.withMonthOfYear(SEP).monthOfYear().getAsShortText();
-        OCT_STR = lDate.withMonthOfYear(OCT).monthOfYear().getAsShortText();
-        NOV_STR = lDate.withMonthOfYear(NOV).monthOfYear().getAsShortText();
-        DEC_STR = lDate.withMonthOfYear(DEC).monthOfYear().getAsShortText();
-    }
-
     protected LocalDate currentDate;
 
     public CustomDateIteratorClass() {
@@ -93,4 +63,11 @@ public abstract class CustomDateIteratorClass<T> implements CustomDateIterator<T
     public abstract T previous();
 
     protected abstract T generatePeriod();
+
+    /**
+     * Returns short name of month in default locale, where January is 1.
+     */
+    protected static String getMonthShortText(int month) {
+        return PeriodLabels.getMonthShortText(month);
+    }
 }
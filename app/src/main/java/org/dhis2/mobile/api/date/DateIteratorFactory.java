@@ -29,48 +29,63 @@
 package org.dhis2.mobile.api.date;
 
 import org.dhis2.mobile.api.models.DateHolder;
+import org.joda.time.LocalDate;
 
 import java.util.List;
 
 public class DateIteratorFactory {
-    private static final String YEARLY = "Yearly";
-    private static final String FINANCIAL_APRIL = "FinancialApril";
-    private static final String FINANCIAL_JULY = "FinancialJuly";
-    private static final String FINANCIAL_OCT = "FinancialOct";
-    private static final String SIX_MONTHLY = "SixMonthly";
-    private static final String QUARTERLY = "Quarterly";
-    private static final String BIMONTHLY = "BiMonthly";
-    private static final String MONTHLY = "Monthly";
-    private static final String WEEKLY = "Weekly";
-    private static final String DAILY = "Daily";
-    private static final String WRONG_PERIOD_TYPE = "Wrong periodType";
 
     public static CustomDateIterator<List<DateHolder>> getDateIterator(String periodType, boolean allowFP) {
-
-        if (periodType != null) {
-            if (periodType.equals(YEARLY)) {
-                return (new YearIterator(allowFP));
-            } else if (periodType.equals(FINANCIAL_APRIL)) {
-                return (new FinAprilYearIterator(allowFP));
-            } else if (periodType.equals(FINANCIAL_JULY)) {
-                return (new FinJulyYearIterator(allowFP));
-            } else if (periodType.equals(FINANCIAL_OCT)) {
-                return (new FinOctYearIterator(allowFP));
-            } else if (periodType.equals(SIX_MONTHLY)) {
-                return (new SixMonthIterator(allowFP));
-            } else if (periodType.equals(QUARTERLY)) {
-                return (new QuarterYearIterator(allowFP));
-            } else if (periodType.equals(BIMONTHLY)) {
-                return (new BiMonthIterator(allowFP));
-            } else if (periodType.equals(MONTHLY)) {
-                return (new MonthIterator(allowFP));
-            } else if (periodType.equals(WEEKLY)) {
-                return (new WeekIterator(allowFP));
-            } else if (periodType.equals(DAILY)) {
-                return (new DayIterator(allowFP));
-            }
+        switch (PeriodType.fromName(periodType)) {
+            case YEARLY:
+                return new YearIterator(allowFP);
+            case FINANCIAL_APRIL:
+                return new FinAprilYearIterator(allowFP);
+            case FINANCIAL_JULY:
+                return new FinJulyYearIterator(allowFP);
+            case FINANCIAL_OCT:
+                return new FinOctYearIterator(allowFP);
+            case SIX_MONTHLY:
+                return new SixMonthIterator(allowFP);
+            case QUARTERLY:
+                return new QuarterYearIterator(allowFP);
+            case BI_MONTHLY:
+                return new BiMonthIterator(allowFP);
+            case MONTHLY:
+                return new MonthIterator(allowFP);
+            case WEEKLY:
+                return new WeekIterator(allowFP);
+            default:
+                return new DayIterator(allowFP);
         }
-        throw new IllegalArgumentException(WRONG_PERIOD_TYPE);
     }
-}
 
+    /**
+     * Lazy alternative to iterator for lists which scroll across years.
+     */
+    public static PeriodSource getPeriodSource(String periodType, boolean allowFP) {
+        return new PeriodSource(PeriodType.fromName(periodType), allowFP);
+    }
+
+    /**
+     * Iterator over periods numbered in given calendar, like "ethiopian".
+     */
+    public static CustomDateIterator<List<DateHolder>> getDateIterator(String periodType, boolean allowFP,
+                                                                       String calendar) {
+        return new PeriodIterator(new PeriodAvailability(PeriodCalendar.fromName(calendar),
+                PeriodType.fromName(periodType), allowFP, 0, Periods.toEpochDay(new LocalDate())));
+    }
+
+    public static PeriodSource getPeriodSource(String periodType, boolean allowFP, String calendar) {
+        return new PeriodSource(new PeriodAvailability(PeriodCalendar.fromName(calendar),
+                PeriodType.fromName(periodType), allowFP, 0, Periods.toEpochDay(new LocalDate())));
+    }
+
+    public static CustomDateIterator<List<DateHolder>> getDateIterator(PeriodAvailability availability) {
+        return new PeriodIterator(availability);
+    }
+
+    public static PeriodSource getPeriodSource(PeriodAvailability availability) {
+        return new PeriodSource(availability);
+    }
+}
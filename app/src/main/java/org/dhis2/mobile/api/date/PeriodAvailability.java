@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+import org.joda.time.LocalDate;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Window of periods which are open for data entry in a data set. Unless
+ * future periods are allowed, period is open once it has ended. With
+ * positive expiryDays it is closed again when more than expiryDays have
+ * passed since its last day. Both bounds are computed upfront, so the
+ * check itself is a comparison of indexes.
+ */
+public final class PeriodAvailability {
+    private final PeriodCalendar mCalendar;
+    private final PeriodType mType;
+    private final boolean mAllowFP;
+    private final int mExpiryDays;
+    private final int mToday;
+
+    private final int mEarliestIndex;
+    private final int mLatestIndex;
+
+    /**
+     * @param today current day as epoch day, preferably taken from server clock.
+     */
+    public PeriodAvailability(PeriodType type, boolean allowFuturePeriods,
+                              int expiryDays, int today) {
+        this(PeriodCalendar.ISO, type, allowFuturePeriods, expiryDays, today);
+    }
+
+    public PeriodAvailability(PeriodCalendar calendar, PeriodType type,
+                              boolean allowFuturePeriods, int expiryDays, int today) {
+        mCalendar = isNull(calendar, "PeriodCalendar must not be null");
+        mType = isNull(type, "PeriodType must not be null");
+        mAllowFP = allowFuturePeriods;
+        mExpiryDays = Math.max(0, expiryDays);
+        mToday = today;
+
+        // period containing today has not ended yet
+        mLatestIndex = allowFuturePeriods ? Integer.MAX_VALUE :
+                Periods.getIndex(Periods.containing(calendar, type, today)) - 1;
+        // the earliest period whose last day is not older than expiryDays
+        mEarliestIndex = mExpiryDays > 0 ?
+                Periods.getIndex(Periods.containing(calendar, type, today - mExpiryDays)) :
+                Integer.MIN_VALUE;
+    }
+
+    public static PeriodAvailability fromTime(PeriodType type, boolean allowFuturePeriods,
+                                              int expiryDays, long currentTimeMillis) {
+        return new PeriodAvailability(type, allowFuturePeriods, expiryDays,
+                Periods.toEpochDay(new LocalDate(currentTimeMillis)));
+    }
+
+    public boolean isOpen(long period) {
+        return Periods.getType(period) == mType && Periods.getCalendar(period) == mCalendar &&
+                isOpen(Periods.getIndex(period));
+    }
+
+    /**
+     * Checks period identified by DHIS2 id, like 2015W12. Returns
+     * false for ids which are malformed or of different type.
+     */
+    public boolean isOpen(String periodId) {
+        try {
+            return periodId != null && isOpen(Periods.parse(mCalendar, periodId));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    boolean isOpen(int index) {
+        return mEarliestIndex <= index && index <= mLatestIndex;
+    }
+
+    public PeriodCalendar getCalendar() {
+        return mCalendar;
+    }
+
+    public PeriodType getPeriodType() {
+        return mType;
+    }
+
+    public boolean isAllowFuturePeriods() {
+        return mAllowFP;
+    }
+
+    public int getExpiryDays() {
+        return mExpiryDays;
+    }
+
+    public int getToday() {
+        return mToday;
+    }
+
+    /**
+     * Returns index of the oldest open period, Integer.MIN_VALUE if periods do not expire.
+     */
+    int getEarliestIndex() {
+        return mEarliestIndex;
+    }
+
+    /**
+     * Returns index of the latest open period, Integer.MAX_VALUE if future periods are allowed.
+     */
+    int getLatestIndex() {
+        return mLatestIndex;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+import org.dhis2.mobile.sdk.entities.DataSet;
+import org.joda.time.LocalDate;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * PeriodAvailability of each data set, shared by the period picker and
+ * checks before data entry. Entry is rebuilt when the day changes or
+ * when data set was updated by metadata sync (lastUpdated differs).
+ * Periods of one data set are kept apart for each calendar.
+ */
+public final class PeriodAvailabilityCache {
+    private final Map<Key, Entry> mEntries;
+
+    private PeriodAvailabilityCache() {
+        mEntries = new HashMap<>();
+    }
+
+    public static PeriodAvailabilityCache getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    public PeriodAvailability get(DataSet dataSet, long currentTimeMillis) {
+        return get(dataSet, PeriodCalendar.ISO, currentTimeMillis);
+    }
+
+    /**
+     * @param currentTimeMillis current time, preferably estimated server time.
+     */
+    public synchronized PeriodAvailability get(DataSet dataSet, PeriodCalendar calendar,
+                                               long currentTimeMillis) {
+        isNull(dataSet, "DataSet must not be null");
+        isNull(dataSet.getId(), "DataSet id must not be null");
+        isNull(calendar, "PeriodCalendar must not be null");
+
+        int today = toEpochDay(currentTimeMillis);
+        Key key = new Key(dataSet.getId(), calendar);
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.mAvailability.getToday() != today ||
+                !equals(entry.mLastUpdated, dataSet.getLastUpdated())) {
+            PeriodAvailability availability = new PeriodAvailability(calendar,
+                    PeriodType.fromName(dataSet.getPeriodType()),
+                    dataSet.isAllowFuturePeriods(), dataSet.getExpiryDays(), today);
+            entry = new Entry(calendar, dataSet.getLastUpdated(), availability);
+            mEntries.put(key, entry);
+        }
+        return entry.mAvailability;
+    }
+
+    public boolean isOpen(String dataSetId, String periodId, long currentTimeMillis) {
+        return isOpen(dataSetId, PeriodCalendar.ISO, periodId, currentTimeMillis);
+    }
+
+    /**
+     * Returns false only when period is known to be closed. Data sets
+     * which were not seen yet are left for the server to validate.
+     */
+    public synchronized boolean isOpen(String dataSetId, PeriodCalendar calendar,
+                                       String periodId, long currentTimeMillis) {
+        Key key = new Key(dataSetId, calendar);
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return true;
+        }
+
+        PeriodAvailability availability = entry.mAvailability;
+        int today = toEpochDay(currentTimeMillis);
+        if (availability.getToday() != today) {
+            availability = new PeriodAvailability(entry.mCalendar, availability.getPeriodType(),
+                    availability.isAllowFuturePeriods(), availability.getExpiryDays(), today);
+            mEntries.put(key, new Entry(entry.mCalendar, entry.mLastUpdated, availability));
+        }
+        return availability.isOpen(periodId);
+    }
+
+    public synchronized void invalidate(String dataSetId) {
+        Iterator<Key> keys = mEntries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (equals(keys.next().mDataSetId, dataSetId)) {
+                keys.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    private static int toEpochDay(long millis) {
+        return Periods.toEpochDay(new LocalDate(millis));
+    }
+
+    private static boolean equals(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    private static class InstanceHolder {
+        static final PeriodAvailabilityCache INSTANCE = new PeriodAvailabilityCache();
+    }
+
+    private static class Key {
+        final String mDataSetId;
+        final PeriodCalendar mCalendar;
+
+        Key(String dataSetId, PeriodCalendar calendar) {
+            mDataSetId = dataSetId;
+            mCalendar = calendar;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) object;
+            return PeriodAvailabilityCache.equals(mDataSetId, key.mDataSetId) &&
+                    mCalendar == key.mCalendar;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (mDataSetId == null ? 0 : mDataSetId.hashCode()) +
+                    (mCalendar == null ? 0 : mCalendar.hashCode());
+        }
+    }
+
+    private static class Entry {
+        final PeriodCalendar mCalendar;
+        final String mLastUpdated;
+        final PeriodAvailability mAvailability;
+
+        Entry(PeriodCalendar calendar, String lastUpdated, PeriodAvailability availability) {
+            mCalendar = calendar;
+            mLastUpdated = lastUpdated;
+            mAvailability = availability;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+import org.joda.time.LocalDate;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Calendar in which periods are numbered and identified. Every calendar
+ * has twelve months in a year and converts its dates to and from epoch
+ * days, which are shared by all calendars. Dates are packed as
+ * year * 10000 + month * 100 + day, like in Periods.
+ * <p/>
+ * Calendar is encoded into every period (see Periods), so it has a small
+ * id which is assigned when the calendar is registered.
+ */
+public abstract class PeriodCalendar {
+    private static final int MAX_CALENDARS = 256;
+
+    public static final PeriodCalendar ISO = new IsoCalendar();
+    public static final PeriodCalendar ETHIOPIAN = TableCalendar.ethiopian();
+
+    private static volatile PeriodCalendar[] sCalendars = new PeriodCalendar[0];
+
+    static {
+        register(ISO);
+        register(ETHIOPIAN);
+    }
+
+    private final String mName;
+    private int mId = -1;
+
+    protected PeriodCalendar(String name) {
+        mName = isNull(name, "Calendar name must not be null");
+    }
+
+    /**
+     * Makes calendar available through fromName(String). Calendars like
+     * Nepali one, which are defined by published month length tables,
+     * are registered as TableCalendar built from that table.
+     *
+     * @throws IllegalArgumentException if calendar of the same name exists.
+     */
+    public static synchronized void register(PeriodCalendar calendar) {
+        isNull(calendar, "PeriodCalendar must not be null");
+        PeriodCalendar[] calendars = sCalendars;
+        for (PeriodCalendar existing : calendars) {
+            if (existing.mName.equals(calendar.mName)) {
+                throw new IllegalArgumentException("Calendar already registered: " + calendar.mName);
+            }
+        }
+        if (calendars.length == MAX_CALENDARS) {
+            throw new IllegalStateException("Too many calendars");
+        }
+
+        calendar.mId = calendars.length;
+        calendars = Arrays.copyOf(calendars, calendars.length + 1);
+        calendars[calendar.mId] = calendar;
+        sCalendars = calendars;
+    }
+
+    /**
+     * Returns calendar by its key in DHIS2 system settings (for example "ethiopian").
+     */
+    public static PeriodCalendar fromName(String name) {
+        for (PeriodCalendar calendar : sCalendars) {
+            if (calendar.mName.equals(name)) {
+                return calendar;
+            }
+        }
+        throw new IllegalArgumentException("Wrong calendar: " + name);
+    }
+
+    static PeriodCalendar get(int id) {
+        return sCalendars[id];
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    int getId() {
+        if (mId < 0) {
+            throw new IllegalStateException("Calendar is not registered: " + mName);
+        }
+        return mId;
+    }
+
+    /**
+     * Converts date of this calendar to the number of days since 1970-01-01.
+     */
+    public abstract int toEpochDay(int year, int month, int day);
+
+    /**
+     * Converts epoch day to date of this calendar, packed as year * 10000 + month * 100 + day.
+     */
+    public abstract int toYmd(int epochDay);
+
+    public abstract int getDaysInMonth(int year, int month);
+
+    public abstract String getMonthText(int month, Locale locale);
+
+    public abstract String getMonthShortText(int month, Locale locale);
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+
+    /**
+     * Proleptic Gregorian calendar, arithmetic is done by Periods.
+     */
+    private static final class IsoCalendar extends PeriodCalendar {
+
+        IsoCalendar() {
+            super("iso8601");
+        }
+
+        @Override
+        public int toEpochDay(int year, int month, int day) {
+            return Periods.toEpochDay(year, month, day);
+        }
+
+        @Override
+        public int toYmd(int epochDay) {
+            return Periods.toYmd(epochDay);
+        }
+
+        @Override
+        public int getDaysInMonth(int year, int month) {
+            return Periods.getDaysInMonth(year, month);
+        }
+
+        @Override
+        public String getMonthText(int month, Locale locale) {
+            return new LocalDate(2000, month, 1).monthOfYear().getAsText(locale);
+        }
+
+        @Override
+        public String getMonthShortText(int month, Locale locale) {
+            return new LocalDate(2000, month, 1).monthOfYear().getAsShortText(locale);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+import org.dhis2.mobile.api.models.DateHolder;
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Pages through periods of one type, latest period first. Page is a year
+ * (ISO week year for weeks) or a decade for yearly types. Only periods
+ * which are open according to PeriodAvailability are shown. Pages are
+ * kept in PeriodListCache, pages around the shown one are prepared on
+ * a background thread.
+ */
+public class PeriodIterator extends CustomDateIteratorClass<List<DateHolder>> {
+    private static final int DECADE = 10;
+
+    private final PeriodCalendar mCalendar;
+    private final PeriodType mType;
+    private final PeriodAvailability mAvailability;
+    private final int mToday;
+    private int mPage;
+
+    public PeriodIterator(PeriodType type, boolean allowFuturePeriod) {
+        this(new PeriodAvailability(type, allowFuturePeriod, 0,
+                Periods.toEpochDay(new LocalDate())));
+    }
+
+    public PeriodIterator(PeriodAvailability availability) {
+        mAvailability = isNull(availability, "PeriodAvailability must not be null");
+        mCalendar = availability.getCalendar();
+        mType = availability.getPeriodType();
+        mToday = availability.getToday();
+    }
+
+    @Override
+    public List<DateHolder> current() {
+        mPage = 0;
+        if (!isOpen(mPage)) {
+            mPage--;
+        }
+        return generatePeriod();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return isOpen(mPage + 1);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return isOpen(mPage - 1);
+    }
+
+    @Override
+    public List<DateHolder> next() {
+        mPage++;
+        return generatePeriod();
+    }
+
+    @Override
+    public List<DateHolder> previous() {
+        mPage--;
+        return generatePeriod();
+    }
+
+    /**
+     * Returned list is shared and must not be modified.
+     */
+    @Override
+    protected List<DateHolder> generatePeriod() {
+        List<DateHolder> dates = getPage(mPage);
+        prefetch(mPage - 1);
+        prefetch(mPage + 1);
+        return dates;
+    }
+
+    public PeriodCalendar getCalendar() {
+        return mCalendar;
+    }
+
+    public PeriodType getPeriodType() {
+        return mType;
+    }
+
+    protected String getLabel(long period) {
+        return PeriodLabels.getLabel(period);
+    }
+
+    private List<DateHolder> getPage(int page) {
+        PeriodListCache cache = PeriodListCache.getInstance();
+        PeriodListCache.Key key = getKey(page);
+        List<DateHolder> dates = cache.get(key, mToday);
+        if (dates == null) {
+            dates = Collections.unmodifiableList(createPage(page));
+            cache.put(key, mToday, dates);
+        }
+        return dates;
+    }
+
+    private List<DateHolder> createPage(int page) {
+        int first = getFirstIndex(page);
+        int last = getFirstIndex(page + 1) - 1;
+
+        List<DateHolder> dates = new ArrayList<>(last - first + 1);
+        for (int index = last; index >= first; index--) {
+            if (isAllowed(index)) {
+                long period = Periods.of(mCalendar, mType, index);
+                dates.add(new DateHolder(Periods.format(period), getLabel(period)));
+            }
+        }
+        return dates;
+    }
+
+    // pages next to the shown one are likely to be requested next
+    private void prefetch(final int page) {
+        if (PeriodListCache.getInstance().contains(getKey(page), mToday)) {
+            return;
+        }
+
+        PeriodListCache.getInstance().prefetch(new Runnable() {
+
+            @Override
+            public void run() {
+                getPage(page);
+            }
+        });
+    }
+
+    private PeriodListCache.Key getKey(int page) {
+        return new PeriodListCache.Key(mCalendar, mType, getFirstIndex(page),
+                mAvailability.isAllowFuturePeriods(), mAvailability.getExpiryDays(),
+                Locale.getDefault());
+    }
+
+    private boolean isAllowed(int index) {
+        return mAvailability.isOpen(index);
+    }
+
+    // whether any period on the page is open
+    private boolean isOpen(int page) {
+        int first = Math.max(getFirstIndex(page), mAvailability.getEarliestIndex());
+        int last = Math.min(getFirstIndex(page + 1) - 1, mAvailability.getLatestIndex());
+        return first <= last;
+    }
+
+    // index of the first period on the page
+    private int getFirstIndex(int page) {
+        if (mType.isYearly()) {
+            int current = Periods.getIndex(Periods.containing(mCalendar, mType, mToday));
+            return current - (DECADE - 1) + page * DECADE;
+        }
+
+        int year = Periods.getYear(mCalendar.toYmd(mToday)) + page;
+        // the first week is the one with 4th day of the year
+        int firstDay = mCalendar.toEpochDay(year, JAN, mType == PeriodType.WEEKLY ? 4 : 1);
+        return Periods.getIndex(Periods.containing(mCalendar, mType, firstDay));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Labels of periods shown to the user. Names of months and ranges of
+ * months are looked up in a table, which is built once per calendar and
+ * locale, so a label is put together from a few strings and numbers.
+ */
+final class PeriodLabels {
+    private static final int MONTHS_PER_YEAR = 12;
+    private static final char W = 'W';
+
+    private static final ConcurrentMap<PeriodCalendar, ConcurrentMap<Locale, LabelTable>> TABLES =
+            new ConcurrentHashMap<>();
+
+    private PeriodLabels() {
+        // no instances
+    }
+
+    static String getLabel(long period) {
+        return getLabel(period, Locale.getDefault());
+    }
+
+    static String getLabel(long period, Locale locale) {
+        PeriodCalendar calendar = Periods.getCalendar(period);
+        LabelTable table = getTable(calendar, locale);
+        int start = calendar.toYmd(Periods.getStartDay(period));
+        int startYear = Periods.getYear(start);
+        int startMonth = Periods.getMonth(start);
+
+        PeriodType type = Periods.getType(period);
+        StringBuilder builder = new StringBuilder(32);
+        switch (type) {
+            case DAILY:
+                return builder.append(Periods.getDay(start)).append(' ')
+                        .append(table.getMonthText(startMonth)).append(", ")
+                        .append(startYear).toString();
+            case WEEKLY: {
+                String date = Periods.format(period);
+                builder.append(W).append(date, date.lastIndexOf(W) + 1, date.length()).append(' ');
+                appendDate(builder, start).append(" - ");
+                // label has always shown the Monday after the week
+                return appendDate(builder, calendar.toYmd(Periods.getEndDay(period) + 1)).toString();
+            }
+            case MONTHLY:
+                return builder.append(table.getMonthShortText(startMonth))
+                        .append(' ').append(startYear).toString();
+            case YEARLY:
+                return Periods.format(period);
+            case FINANCIAL_APRIL:
+            case FINANCIAL_JULY:
+            case FINANCIAL_OCT: {
+                int end = calendar.toYmd(Periods.getEndDay(period));
+                return builder.append(table.getMonthShortText(startMonth)).append(' ')
+                        .append(startYear).append(" - ")
+                        .append(table.getMonthShortText(Periods.getMonth(end))).append(' ')
+                        .append(Periods.getYear(end)).toString();
+            }
+            default:
+                return builder.append(table.getRangeText(startMonth, type.getMonths()))
+                        .append(' ').append(startYear).toString();
+        }
+    }
+
+    /**
+     * Returns short name of month in default locale, where January is 1.
+     */
+    static String getMonthShortText(int month) {
+        return getTable(PeriodCalendar.ISO, Locale.getDefault()).getMonthShortText(month);
+    }
+
+    private static LabelTable getTable(PeriodCalendar calendar, Locale locale) {
+        ConcurrentMap<Locale, LabelTable> tables = TABLES.get(calendar);
+        if (tables == null) {
+            ConcurrentMap<Locale, LabelTable> previous =
+                    TABLES.putIfAbsent(calendar, tables = new ConcurrentHashMap<Locale, LabelTable>());
+            if (previous != null) {
+                tables = previous;
+            }
+        }
+
+        LabelTable table = tables.get(locale);
+        if (table == null) {
+            // racing threads build equal tables, keep the first one
+            LabelTable previous = tables.putIfAbsent(locale, table = new LabelTable(calendar, locale));
+            if (previous != null) {
+                table = previous;
+            }
+        }
+        return table;
+    }
+
+    // yyyy-MM-dd, as LocalDate.toString()
+    private static StringBuilder appendDate(StringBuilder builder, int ymd) {
+        appendPadded(builder, Periods.getYear(ymd), 4).append('-');
+        appendPadded(builder, Periods.getMonth(ymd), 2).append('-');
+        return appendPadded(builder, Periods.getDay(ymd), 2);
+    }
+
+    private static StringBuilder appendPadded(StringBuilder builder, int value, int width) {
+        for (int limit = 10, digits = 1; digits < width; limit *= 10, digits++) {
+            if (value < limit) {
+                builder.append('0');
+            }
+        }
+        return builder.append(value);
+    }
+
+    private static final class LabelTable {
+        private final String[] mMonthTexts;
+        private final String[] mMonthShortTexts;
+        // "Jan - Mar" like names, by number of months and first month
+        private final String[][] mRangeTexts;
+
+        LabelTable(PeriodCalendar calendar, Locale locale) {
+            mMonthTexts = new String[MONTHS_PER_YEAR];
+            mMonthShortTexts = new String[MONTHS_PER_YEAR];
+            for (int month = 1; month <= MONTHS_PER_YEAR; month++) {
+                mMonthTexts[month - 1] = calendar.getMonthText(month, locale);
+                mMonthShortTexts[month - 1] = calendar.getMonthShortText(month, locale);
+            }
+
+            mRangeTexts = new String[MONTHS_PER_YEAR + 1][];
+            for (PeriodType type : PeriodType.values()) {
+                int months = type.getMonths();
+                if (months > 1 && mRangeTexts[months] == null) {
+                    mRangeTexts[months] = new String[MONTHS_PER_YEAR];
+                    for (int first = 0; first < MONTHS_PER_YEAR; first++) {
+                        int last = (first + months - 1) % MONTHS_PER_YEAR;
+                        mRangeTexts[months][first] = mMonthShortTexts[first] + " - " + mMonthShortTexts[last];
+                    }
+                }
+            }
+        }
+
+        String getMonthText(int month) {
+            return mMonthTexts[month - 1];
+        }
+
+        String getMonthShortText(int month) {
+            return mMonthShortTexts[month - 1];
+        }
+
+        String getRangeText(int firstMonth, int months) {
+            return mRangeTexts[months][firstMonth - 1];
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+import org.dhis2.mobile.api.models.DateHolder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Pages of periods shared by all PeriodIterators. Page is identified by
+ * calendar, period type, its first period, allowFuturePeriods flag, expiry days
+ * and locale of labels. Which periods are allowed depends on the current
+ * day, so the whole cache is dropped when the day or default locale changes.
+ * <p/>
+ * Does not depend on Android classes, so periods can be benchmarked on JVM.
+ */
+final class PeriodListCache {
+    private static final int MAX_PAGES = 24;
+
+    private final Executor mPrefetchExecutor;
+
+    // guarded by this
+    private final Map<Key, List<DateHolder>> mPages;
+    private int mToday;
+    private Locale mLocale;
+
+    private PeriodListCache() {
+        mPages = new LinkedHashMap<Key, List<DateHolder>>(MAX_PAGES, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<DateHolder>> eldest) {
+                return size() > MAX_PAGES;
+            }
+        };
+        mPrefetchExecutor = Executors.newSingleThreadExecutor(new PrefetchThreadFactory());
+    }
+
+    static PeriodListCache getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Returns null if page is not cached or if it was requested by
+     * an iterator created before the last day rollover.
+     */
+    synchronized List<DateHolder> get(Key key, int today) {
+        return isValid(key, today) ? mPages.get(key) : null;
+    }
+
+    /**
+     * List must not be modified after it is put.
+     */
+    synchronized void put(Key key, int today, List<DateHolder> dates) {
+        if (isValid(key, today)) {
+            mPages.put(key, dates);
+        }
+    }
+
+    synchronized boolean contains(Key key, int today) {
+        return isValid(key, today) && mPages.containsKey(key);
+    }
+
+    void prefetch(Runnable task) {
+        mPrefetchExecutor.execute(task);
+    }
+
+    // must be called while holding the lock
+    private boolean isValid(Key key, int today) {
+        if (today < mToday) {
+            return false;
+        }
+
+        if (today > mToday || !key.mLocale.equals(mLocale)) {
+            mPages.clear();
+            mToday = today;
+            mLocale = key.mLocale;
+        }
+        return true;
+    }
+
+    private static class InstanceHolder {
+        static final PeriodListCache INSTANCE = new PeriodListCache();
+    }
+
+    static final class Key {
+        private final PeriodCalendar mCalendar;
+        private final PeriodType mType;
+        private final int mFirstIndex;
+        private final boolean mAllowFP;
+        private final int mExpiryDays;
+        private final Locale mLocale;
+
+        Key(PeriodCalendar calendar, PeriodType type, int firstIndex,
+            boolean allowFP, int expiryDays, Locale locale) {
+            mCalendar = calendar;
+            mType = type;
+            mFirstIndex = firstIndex;
+            mAllowFP = allowFP;
+            mExpiryDays = expiryDays;
+            mLocale = locale;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) object;
+            return mCalendar == key.mCalendar && mType == key.mType &&
+                    mFirstIndex == key.mFirstIndex &&
+                    mAllowFP == key.mAllowFP && mExpiryDays == key.mExpiryDays &&
+                    mLocale.equals(key.mLocale);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mCalendar.hashCode();
+            result = 31 * result + mType.hashCode();
+            result = 31 * result + mFirstIndex;
+            result = 31 * result + (mAllowFP ? 1 : 0);
+            result = 31 * result + mExpiryDays;
+            result = 31 * result + mLocale.hashCode();
+            return result;
+        }
+    }
+
+    static class PrefetchThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "period-prefetch");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+import org.dhis2.mobile.api.models.DateHolder;
+import org.joda.time.LocalDate;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Lazy source of periods of one type, which are computed from their
+ * index only when asked for. Position 0 is the latest period which
+ * can be selected, positions grow towards the past, so the source can
+ * back a list which scrolls across years without building pages.
+ */
+public final class PeriodSource {
+    // oldest year offered by the source
+    private static final int FIRST_YEAR = 1950;
+
+    private final PeriodCalendar mCalendar;
+    private final PeriodType mType;
+    private final boolean mAllowFP;
+    private final long mLatest;
+    private final long mEarliest;
+
+    public PeriodSource(PeriodType type, boolean allowFuturePeriod) {
+        this(type, allowFuturePeriod, new LocalDate());
+    }
+
+    public PeriodSource(PeriodType type, boolean allowFuturePeriod, LocalDate today) {
+        mCalendar = PeriodCalendar.ISO;
+        mType = isNull(type, "PeriodType must not be null");
+        mAllowFP = allowFuturePeriod;
+        isNull(today, "LocalDate must not be null");
+
+        // future periods are offered until the end of current year,
+        // otherwise the latest period is the last one which has ended
+        int todayDay = Periods.toEpochDay(today);
+        mLatest = allowFuturePeriod ?
+                Periods.containing(type, Periods.toEpochDay(today.getYear(), 12, 31)) :
+                Periods.previous(Periods.containing(type, todayDay));
+        mEarliest = Periods.containing(type, Periods.toEpochDay(FIRST_YEAR, 1, 1));
+    }
+
+    /**
+     * Source which offers only periods open for data entry, numbered in
+     * calendar of the availability. Future periods are still bounded by
+     * the end of current year.
+     */
+    public PeriodSource(PeriodAvailability availability) {
+        isNull(availability, "PeriodAvailability must not be null");
+        mCalendar = availability.getCalendar();
+        mType = availability.getPeriodType();
+        mAllowFP = availability.isAllowFuturePeriods();
+
+        int year = Periods.getYear(mCalendar.toYmd(availability.getToday()));
+        long endOfYear = Periods.containing(mCalendar, mType,
+                mCalendar.toEpochDay(year + 1, 1, 1) - 1);
+        long firstYear = Periods.containing(mCalendar, mType, mCalendar.toEpochDay(FIRST_YEAR, 1, 1));
+        mLatest = Periods.of(mCalendar, mType, Math.min(
+                Periods.getIndex(endOfYear), availability.getLatestIndex()));
+        mEarliest = Periods.of(mCalendar, mType, Math.max(
+                Periods.getIndex(firstYear), availability.getEarliestIndex()));
+    }
+
+    public PeriodCalendar getCalendar() {
+        return mCalendar;
+    }
+
+    public PeriodType getPeriodType() {
+        return mType;
+    }
+
+    public boolean isAllowFuturePeriods() {
+        return mAllowFP;
+    }
+
+    public int size() {
+        // all periods may be expired
+        return Math.max(0, Periods.getIndex(mLatest) - Periods.getIndex(mEarliest) + 1);
+    }
+
+    public long getLatest() {
+        return mLatest;
+    }
+
+    /**
+     * Returns period at given position, 0 being the latest one.
+     */
+    public long get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size());
+        }
+        return Periods.plus(mLatest, -position);
+    }
+
+    /**
+     * Returns position of period, or -1 if source does not contain it.
+     */
+    public int getPosition(long period) {
+        if (Periods.getType(period) != mType || Periods.getCalendar(period) != mCalendar) {
+            return -1;
+        }
+
+        int position = Periods.getIndex(mLatest) - Periods.getIndex(period);
+        return position < size() && position >= 0 ? position : -1;
+    }
+
+    /**
+     * Returns position of period which contains the date or -1.
+     */
+    public int getPosition(LocalDate date) {
+        return getPosition(Periods.containing(mCalendar, mType, Periods.toEpochDay(date)));
+    }
+
+    public boolean hasNewer(long period) {
+        return getPosition(period) > 0;
+    }
+
+    public boolean hasOlder(long period) {
+        int position = getPosition(period);
+        return position >= 0 && position < size() - 1;
+    }
+
+    public DateHolder getDateHolder(long period) {
+        return new DateHolder(Periods.format(period), PeriodLabels.getLabel(period));
+    }
+
+    /**
+     * List view of the source. Holders are created in get(), so
+     * adapter creates only the rows which are on the screen.
+     */
+    public List<DateHolder> asList() {
+        return new PeriodList(this);
+    }
+
+    static class PeriodList extends AbstractList<DateHolder> implements RandomAccess {
+        private final PeriodSource mSource;
+
+        PeriodList(PeriodSource source) {
+            mSource = source;
+        }
+
+        @Override
+        public DateHolder get(int position) {
+            return mSource.getDateHolder(mSource.get(position));
+        }
+
+        @Override
+        public int size() {
+            return mSource.size();
+        }
+    }
+}
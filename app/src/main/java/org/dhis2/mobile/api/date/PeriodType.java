@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+/**
+ * Period types of DHIS2. Apart from daily and weekly, every type
+ * is a fixed number of months starting at given month of year.
+ */
+public enum PeriodType {
+    DAILY("Daily", 0, 1, null),
+    WEEKLY("Weekly", 0, 1, "W"),
+    MONTHLY("Monthly", 1, 1, null),
+    BI_MONTHLY("BiMonthly", 2, 1, "B"),
+    QUARTERLY("Quarterly", 3, 1, "Q"),
+    SIX_MONTHLY("SixMonthly", 6, 1, "S"),
+    YEARLY("Yearly", 12, 1, null),
+    FINANCIAL_APRIL("FinancialApril", 12, 4, "April"),
+    FINANCIAL_JULY("FinancialJuly", 12, 7, "July"),
+    FINANCIAL_OCT("FinancialOct", 12, 10, "Oct");
+
+    private final String mName;
+    private final int mMonths;
+    private final int mStartMonth;
+    private final String mIdPart;
+
+    PeriodType(String name, int months, int startMonth, String idPart) {
+        mName = name;
+        mMonths = months;
+        mStartMonth = startMonth;
+        mIdPart = idPart;
+    }
+
+    /**
+     * Returns type by its name in DHIS2 (for example "Monthly").
+     */
+    public static PeriodType fromName(String name) {
+        for (PeriodType type : values()) {
+            if (type.mName.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Wrong periodType: " + name);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Length of period in months, 0 for daily and weekly periods.
+     */
+    public int getMonths() {
+        return mMonths;
+    }
+
+    public int getStartMonth() {
+        return mStartMonth;
+    }
+
+    /**
+     * True for types which have one period per year.
+     */
+    public boolean isYearly() {
+        return mMonths == 12;
+    }
+
+    String getIdPart() {
+        return mIdPart;
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+import org.joda.time.LocalDate;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Period is encoded in a long: PeriodCalendar id and PeriodType ordinal
+ * in the high and ordinal index of the period in the low 32 bits. Index
+ * is the number of the period counted from a fixed origin (day and week
+ * indexes are counted from 1970-01-01, month based ones from year 0 of
+ * the calendar), so stepping, comparing and containment checks are plain
+ * integer arithmetic and do not allocate. Dates are represented as epoch
+ * days. Methods without calendar argument work with ISO calendar.
+ */
+public final class Periods {
+    private static final PeriodType[] TYPES = PeriodType.values();
+
+    // 1970-01-01 was Thursday, Monday of its week is epoch day -3
+    private static final int WEEK_OFFSET = 3;
+    private static final int DAYS_PER_WEEK = 7;
+    private static final int MONTHS_PER_YEAR = 12;
+
+    private Periods() {
+        // no instances
+    }
+
+    public static long of(PeriodType type, int index) {
+        return of(PeriodCalendar.ISO, type, index);
+    }
+
+    public static long of(PeriodCalendar calendar, PeriodType type, int index) {
+        isNull(calendar, "PeriodCalendar must not be null");
+        isNull(type, "PeriodType must not be null");
+        return ((long) calendar.getId() << 40) | ((long) type.ordinal() << 32) |
+                (index & 0xFFFFFFFFL);
+    }
+
+    public static PeriodType getType(long period) {
+        return TYPES[(int) (period >>> 32) & 0xFF];
+    }
+
+    public static PeriodCalendar getCalendar(long period) {
+        return PeriodCalendar.get((int) (period >>> 40));
+    }
+
+    public static int getIndex(long period) {
+        return (int) period;
+    }
+
+    /**
+     * Returns period of given type which contains the day.
+     */
+    public static long containing(PeriodType type, int epochDay) {
+        return containing(PeriodCalendar.ISO, type, epochDay);
+    }
+
+    public static long containing(PeriodCalendar calendar, PeriodType type, int epochDay) {
+        switch (type) {
+            case DAILY:
+                return of(calendar, type, epochDay);
+            case WEEKLY:
+                return of(calendar, type, floorDiv(epochDay + WEEK_OFFSET, DAYS_PER_WEEK));
+            default: {
+                int ymd = calendar.toYmd(epochDay);
+                int month = getYear(ymd) * MONTHS_PER_YEAR + getMonth(ymd) - 1;
+                return of(calendar, type, floorDiv(month - (type.getStartMonth() - 1), type.getMonths()));
+            }
+        }
+    }
+
+    public static long plus(long period, int periods) {
+        // keeps calendar and type bits
+        return (period & 0xFFFFFFFF00000000L) | ((getIndex(period) + periods) & 0xFFFFFFFFL);
+    }
+
+    public static long next(long period) {
+        return plus(period, 1);
+    }
+
+    public static long previous(long period) {
+        return plus(period, -1);
+    }
+
+    /**
+     * First day of period as epoch day.
+     */
+    public static int getStartDay(long period) {
+        PeriodType type = getType(period);
+        int index = getIndex(period);
+        switch (type) {
+            case DAILY:
+                return index;
+            case WEEKLY:
+                return index * DAYS_PER_WEEK - WEEK_OFFSET;
+            default: {
+                int month = getStartMonth(type, index);
+                return getCalendar(period).toEpochDay(floorDiv(month, MONTHS_PER_YEAR),
+                        floorMod(month, MONTHS_PER_YEAR) + 1, 1);
+            }
+        }
+    }
+
+    /**
+     * Last day of period (inclusive) as epoch day.
+     */
+    public static int getEndDay(long period) {
+        return getStartDay(next(period)) - 1;
+    }
+
+    public static boolean contains(long period, int epochDay) {
+        return getStartDay(period) <= epochDay && epochDay <= getEndDay(period);
+    }
+
+    /**
+     * True if inner period lies entirely within outer one.
+     */
+    public static boolean encloses(long outer, long inner) {
+        return getStartDay(outer) <= getStartDay(inner) &&
+                getEndDay(inner) <= getEndDay(outer);
+    }
+
+    /**
+     * Orders periods by start day, longer period goes first if both start on the same day.
+     */
+    public static int compare(long first, long second) {
+        int firstStart = getStartDay(first);
+        int secondStart = getStartDay(second);
+        if (firstStart != secondStart) {
+            return firstStart < secondStart ? -1 : 1;
+        }
+
+        int firstEnd = getEndDay(first);
+        int secondEnd = getEndDay(second);
+        return firstEnd == secondEnd ? 0 : (firstEnd > secondEnd ? -1 : 1);
+    }
+
+    /**
+     * Returns DHIS2 identifier of period, like 20150312, 2015W12,
+     * 201503, 201503B, 2015Q1, 2015S1, 2015 or 2015April.
+     */
+    public static String format(long period) {
+        PeriodType type = getType(period);
+        PeriodCalendar calendar = getCalendar(period);
+        StringBuilder builder = new StringBuilder(10);
+        switch (type) {
+            case DAILY: {
+                int ymd = calendar.toYmd(getIndex(period));
+                builder.append(getYear(ymd));
+                appendTwoDigits(builder, getMonth(ymd));
+                appendTwoDigits(builder, getDay(ymd));
+                break;
+            }
+            case WEEKLY: {
+                int thursday = getStartDay(period) + WEEK_OFFSET;
+                int weekYear = getYear(calendar.toYmd(thursday));
+                builder.append(weekYear).append(type.getIdPart())
+                        .append((thursday - calendar.toEpochDay(weekYear, 1, 1)) / DAYS_PER_WEEK + 1);
+                break;
+            }
+            default: {
+                int month = getStartMonth(type, getIndex(period));
+                int year = floorDiv(month, MONTHS_PER_YEAR);
+                int monthOfYear = floorMod(month, MONTHS_PER_YEAR) + 1;
+                builder.append(year);
+                if (type == PeriodType.MONTHLY) {
+                    appendTwoDigits(builder, monthOfYear);
+                } else if (type == PeriodType.BI_MONTHLY) {
+                    appendTwoDigits(builder, monthOfYear);
+                    builder.append(type.getIdPart());
+                } else if (type == PeriodType.QUARTERLY || type == PeriodType.SIX_MONTHLY) {
+                    builder.append(type.getIdPart())
+                            .append((monthOfYear - 1) / type.getMonths() + 1);
+                } else if (type.getIdPart() != null) {
+                    builder.append(type.getIdPart());
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses DHIS2 identifier of period, see format(long).
+     *
+     * @throws IllegalArgumentException if identifier is not valid.
+     */
+    public static long parse(String id) {
+        return parse(PeriodCalendar.ISO, id);
+    }
+
+    /**
+     * Parses identifier of period in given calendar.
+     *
+     * @throws IllegalArgumentException if identifier is not valid.
+     */
+    public static long parse(PeriodCalendar calendar, String id) {
+        isNull(calendar, "PeriodCalendar must not be null");
+        isNull(id, "Period identifier must not be null");
+        int length = id.length();
+        int year = parseNumber(id, 0, 4);
+        if (year < 0) {
+            throw new IllegalArgumentException("Wrong period: " + id);
+        }
+
+        if (length == 4) {
+            return of(calendar, PeriodType.YEARLY, year);
+        }
+
+        if (Character.isDigit(id.charAt(4))) {
+            int month = parseNumber(id, 4, 6);
+            if (month < 1 || month > MONTHS_PER_YEAR) {
+                throw new IllegalArgumentException("Wrong period: " + id);
+            }
+
+            if (length == 6) {
+                return of(calendar, PeriodType.MONTHLY, year * MONTHS_PER_YEAR + month - 1);
+            }
+            if (length == 7 && month % 2 == 1 &&
+                    id.endsWith(PeriodType.BI_MONTHLY.getIdPart())) {
+                return of(calendar, PeriodType.BI_MONTHLY, (year * MONTHS_PER_YEAR + month - 1) / 2);
+            }
+            if (length == 8) {
+                int day = parseNumber(id, 6, 8);
+                if (day >= 1 && day <= calendar.getDaysInMonth(year, month)) {
+                    return of(calendar, PeriodType.DAILY, calendar.toEpochDay(year, month, day));
+                }
+            }
+            throw new IllegalArgumentException("Wrong period: " + id);
+        }
+
+        for (PeriodType type : TYPES) {
+            String idPart = type.getIdPart();
+            if (idPart == null || !id.startsWith(idPart, 4)) {
+                continue;
+            }
+
+            if (type.isYearly()) {
+                if (length == 4 + idPart.length()) {
+                    return of(calendar, type, year);
+                }
+                continue;
+            }
+
+            int number = parseNumber(id, 5, length);
+            switch (type) {
+                case WEEKLY: {
+                    if (number >= 1 && number <= getWeeksInYear(calendar, year)) {
+                        int start = getFirstMonday(calendar, year) + (number - 1) * DAYS_PER_WEEK;
+                        return of(calendar, type, floorDiv(start + WEEK_OFFSET, DAYS_PER_WEEK));
+                    }
+                    break;
+                }
+                case QUARTERLY:
+                case SIX_MONTHLY: {
+                    int periodsPerYear = MONTHS_PER_YEAR / type.getMonths();
+                    if (number >= 1 && number <= periodsPerYear) {
+                        return of(calendar, type, year * periodsPerYear + number - 1);
+                    }
+                    break;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Wrong period: " + id);
+    }
+
+    public static int toEpochDay(LocalDate date) {
+        isNull(date, "LocalDate must not be null");
+        return toEpochDay(date.getYear(), date.getMonthOfYear(), date.getDayOfMonth());
+    }
+
+    public static LocalDate toLocalDate(int epochDay) {
+        int ymd = toYmd(epochDay);
+        return new LocalDate(getYear(ymd), getMonth(ymd), getDay(ymd));
+    }
+
+    /**
+     * Converts proleptic Gregorian date to the number of days since 1970-01-01.
+     */
+    public static int toEpochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns date packed as year * 10000 + month * 100 + day.
+     */
+    static int toYmd(int epochDay) {
+        int days = epochDay + 719468;
+        int era = floorDiv(days, 146097);
+        int dayOfEra = days - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    static int getYear(int ymd) {
+        return ymd / 10000;
+    }
+
+    static int getMonth(int ymd) {
+        return ymd / 100 % 100;
+    }
+
+    static int getDay(int ymd) {
+        return ymd % 100;
+    }
+
+    /**
+     * Epoch day of Monday of the first week of the year, which is the
+     * week with 4th day of the year, as in ISO 8601.
+     */
+    static int getFirstMonday(PeriodCalendar calendar, int year) {
+        int fourth = calendar.toEpochDay(year, 1, 4);
+        return fourth - floorMod(fourth + WEEK_OFFSET, DAYS_PER_WEEK);
+    }
+
+    static int getWeeksInYear(PeriodCalendar calendar, int year) {
+        return (getFirstMonday(calendar, year + 1) - getFirstMonday(calendar, year)) / DAYS_PER_WEEK;
+    }
+
+    static int getDaysInMonth(int year, int month) {
+        return month == MONTHS_PER_YEAR ? 31 :
+                toEpochDay(year, month + 1, 1) - toEpochDay(year, month, 1);
+    }
+
+    // number of months from year 0 to the start of period
+    private static int getStartMonth(PeriodType type, int index) {
+        return index * type.getMonths() + type.getStartMonth() - 1;
+    }
+
+    private static void appendTwoDigits(StringBuilder builder, int value) {
+        if (value < 10) {
+            builder.append('0');
+        }
+        builder.append(value);
+    }
+
+    // returns -1 if there is anything else than digits in range
+    private static int parseNumber(String string, int start, int end) {
+        if (start >= end || end > string.length()) {
+            return -1;
+        }
+
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    private static int floorDiv(int x, int y) {
+        int quotient = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? quotient - 1 : quotient;
+    }
+
+    private static int floorMod(int x, int y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.date;
+
+import java.util.Locale;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Calendar defined by lengths of its months over a range of years.
+ * Epoch day of the first day of every month is precomputed, so
+ * conversions in both directions are a few array lookups.
+ */
+public final class TableCalendar extends PeriodCalendar {
+    private static final int MONTHS_PER_YEAR = 12;
+    // average length of month in days, multiplied by 400
+    private static final int MONTH_LENGTH_400 = 12175;
+
+    // Meskerem 1 of year 1, Julian 29 August 8
+    private static final int ETHIOPIAN_EPOCH = -716367;
+    private static final int ETHIOPIAN_FIRST_YEAR = 1900;
+    private static final int ETHIOPIAN_LAST_YEAR = 2200;
+
+    private final int mFirstYear;
+    // epoch day of the first day of each month, plus the day after the table
+    private final int[] mMonthStarts;
+    private final String[] mMonthTexts;
+    private final String[] mMonthShortTexts;
+
+    /**
+     * @param firstYear     year of the first row of the table.
+     * @param firstDay      epoch day of the first day of firstYear.
+     * @param monthLengths  days of each of the twelve months, one row per year.
+     */
+    public TableCalendar(String name, int firstYear, int firstDay, int[][] monthLengths,
+                         String[] monthTexts, String[] monthShortTexts) {
+        super(name);
+        isNull(monthLengths, "Month lengths must not be null");
+        mMonthTexts = checkMonths(monthTexts);
+        mMonthShortTexts = checkMonths(monthShortTexts);
+        mFirstYear = firstYear;
+
+        mMonthStarts = new int[monthLengths.length * MONTHS_PER_YEAR + 1];
+        int day = firstDay;
+        for (int year = 0; year < monthLengths.length; year++) {
+            if (monthLengths[year] == null || monthLengths[year].length != MONTHS_PER_YEAR) {
+                throw new IllegalArgumentException("Year " + (firstYear + year) +
+                        " must have " + MONTHS_PER_YEAR + " months");
+            }
+            for (int month = 0; month < MONTHS_PER_YEAR; month++) {
+                mMonthStarts[year * MONTHS_PER_YEAR + month] = day;
+                day += monthLengths[year][month];
+            }
+        }
+        mMonthStarts[mMonthStarts.length - 1] = day;
+    }
+
+    /**
+     * Ethiopian calendar. The five or six days of Pagume are counted
+     * to Nehase, so that the year has twelve months like periods expect.
+     */
+    static TableCalendar ethiopian() {
+        // built here rather than in static fields, as this runs
+        // from initializer of PeriodCalendar, the superclass
+        String[] monthTexts = {
+                "Meskerem", "Tikimt", "Hidar", "Tahsas", "Tir", "Yekatit",
+                "Megabit", "Miazia", "Genbot", "Sene", "Hamle", "Nehase"
+        };
+        String[] monthShortTexts = {
+                "Mes", "Tik", "Hid", "Tah", "Tir", "Yek",
+                "Meg", "Mia", "Gen", "Sen", "Ham", "Neh"
+        };
+
+        int[][] monthLengths = new int[ETHIOPIAN_LAST_YEAR - ETHIOPIAN_FIRST_YEAR + 1][];
+        for (int year = ETHIOPIAN_FIRST_YEAR; year <= ETHIOPIAN_LAST_YEAR; year++) {
+            int[] months = new int[MONTHS_PER_YEAR];
+            for (int month = 0; month < MONTHS_PER_YEAR; month++) {
+                months[month] = 30;
+            }
+            // year before the one divisible by four is leap
+            months[MONTHS_PER_YEAR - 1] += year % 4 == 3 ? 6 : 5;
+            monthLengths[year - ETHIOPIAN_FIRST_YEAR] = months;
+        }
+
+        int firstDay = ETHIOPIAN_EPOCH + 365 * (ETHIOPIAN_FIRST_YEAR - 1) + ETHIOPIAN_FIRST_YEAR / 4;
+        return new TableCalendar("ethiopian", ETHIOPIAN_FIRST_YEAR, firstDay, monthLengths,
+                monthTexts, monthShortTexts);
+    }
+
+    public int getFirstYear() {
+        return mFirstYear;
+    }
+
+    public int getLastYear() {
+        return mFirstYear + (mMonthStarts.length - 1) / MONTHS_PER_YEAR - 1;
+    }
+
+    @Override
+    public int toEpochDay(int year, int month, int day) {
+        int index = getMonthIndex(year, month);
+        return mMonthStarts[index] + day - 1;
+    }
+
+    @Override
+    public int toYmd(int epochDay) {
+        int last = mMonthStarts.length - 1;
+        if (epochDay < mMonthStarts[0] || epochDay >= mMonthStarts[last]) {
+            throw new IllegalArgumentException("Day " + epochDay + " is out of " + getName() +
+                    " calendar table (" + mFirstYear + " - " + getLastYear() + ")");
+        }
+
+        // months have similar length, so the guess is off by a month or two at most
+        int index = (int) ((long) (epochDay - mMonthStarts[0]) * 400 / MONTH_LENGTH_400);
+        index = Math.min(index, last - 1);
+        while (mMonthStarts[index] > epochDay) {
+            index--;
+        }
+        while (mMonthStarts[index + 1] <= epochDay) {
+            index++;
+        }
+
+        int year = mFirstYear + index / MONTHS_PER_YEAR;
+        int month = index % MONTHS_PER_YEAR + 1;
+        int day = epochDay - mMonthStarts[index] + 1;
+        return year * 10000 + month * 100 + day;
+    }
+
+    @Override
+    public int getDaysInMonth(int year, int month) {
+        int index = getMonthIndex(year, month);
+        return mMonthStarts[index + 1] - mMonthStarts[index];
+    }
+
+    @Override
+    public String getMonthText(int month, Locale locale) {
+        return mMonthTexts[month - 1];
+    }
+
+    @Override
+    public String getMonthShortText(int month, Locale locale) {
+        return mMonthShortTexts[month - 1];
+    }
+
+    private int getMonthIndex(int year, int month) {
+        if (month < 1 || month > MONTHS_PER_YEAR) {
+            throw new IllegalArgumentException("Wrong month: " + month);
+        }
+        if (year < mFirstYear || year > getLastYear()) {
+            throw new IllegalArgumentException("Year " + year + " is out of " + getName() +
+                    " calendar table (" + mFirstYear + " - " + getLastYear() + ")");
+        }
+        return (year - mFirstYear) * MONTHS_PER_YEAR + month - 1;
+    }
+
+    private static String[] checkMonths(String[] months) {
+        if (months == null || months.length != MONTHS_PER_YEAR) {
+            throw new IllegalArgumentException("Names of " + MONTHS_PER_YEAR + " months are expected");
+        }
+        return months.clone();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.api.job;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.PowerManager;
+
+import org.dhis2.mobile.DhisService;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Runs DhisService.syncMetaData() periodically, but only when device is
+ * on unmetered network, charging and idle. Otherwise the attempt is
+ * repeated after retry delay. Every run time gets a random jitter, so
+ * devices which were set up together do not hit the server at once.
+ *
+ * Alarms wake device up, so it is still asleep (with screen off) when
+ * conditions are checked. Sync job holds its own wake lock while it runs.
+ */
+public final class PeriodicSyncScheduler {
+    public static final String ACTION_PERIODIC_SYNC = "org.dhis2.mobile.action.PERIODIC_SYNC";
+
+    public static final long DEFAULT_INTERVAL = TimeUnit.HOURS.toMillis(12);
+    public static final long DEFAULT_MAX_JITTER = TimeUnit.HOURS.toMillis(1);
+    public static final long DEFAULT_RETRY_DELAY = TimeUnit.MINUTES.toMillis(30);
+
+    // covers time between alarm and start of sync job
+    private static final long HANDOFF_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    private static final String PERIODIC_SYNC = "preferences:PeriodicSync";
+    private static final String LAST_RUN_TIME = "key:lastRunTime";
+    private static final String NEXT_RUN_TIME = "key:nextRunTime";
+
+    private final Context mContext;
+    private final Runnable mSync;
+    private final DeviceState mDeviceState;
+    private final Clock mClock;
+    private final Random mRandom;
+    private final SharedPreferences mPrefs;
+    private final PowerManager.WakeLock mWakeLock;
+
+    private long mInterval = DEFAULT_INTERVAL;
+    private long mMaxJitter = DEFAULT_MAX_JITTER;
+    private long mRetryDelay = DEFAULT_RETRY_DELAY;
+
+    public PeriodicSyncScheduler(Context context, DhisService dhisService) {
+        this(context, newSync(dhisService), new AndroidDeviceState(context),
+                Clock.SYSTEM, new Random());
+    }
+
+    /**
+     * @param sync starts synchronization, it must not block.
+     */
+    public PeriodicSyncScheduler(Context context, Runnable sync,
+                                 DeviceState deviceState, Clock clock, Random random) {
+        mContext = isNull(context, "Context object must not be null").getApplicationContext();
+        mSync = isNull(sync, "Runnable must not be null");
+        mDeviceState = isNull(deviceState, "DeviceState must not be null");
+        mClock = isNull(clock, "Clock must not be null");
+        mRandom = isNull(random, "Random must not be null");
+        mPrefs = mContext.getSharedPreferences(PERIODIC_SYNC, Context.MODE_PRIVATE);
+
+        PowerManager powerManager = (PowerManager)
+                mContext.getSystemService(Context.POWER_SERVICE);
+        mWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, PERIODIC_SYNC);
+        mWakeLock.setReferenceCounted(false);
+    }
+
+    public synchronized void setInterval(long interval, long maxJitter, long retryDelay) {
+        if (interval <= 0 || maxJitter < 0 || retryDelay <= 0) {
+            throw new IllegalArgumentException("Interval and retry delay must be positive, " +
+                    "jitter must not be negative");
+        }
+        mInterval = interval;
+        mMaxJitter = maxJitter;
+        mRetryDelay = retryDelay;
+    }
+
+    /**
+     * Sets alarm for the stored next run time. Alarms do not survive
+     * reboot, so it has to be called each time process starts.
+     */
+    public synchronized void start() {
+        long nextRunTime = getNextRunTime();
+        if (nextRunTime <= 0) {
+            nextRunTime = schedule(mInterval);
+        }
+        setAlarm(nextRunTime);
+    }
+
+    public synchronized void stop() {
+        getAlarmManager().cancel(getPendingIntent());
+        mPrefs.edit().remove(NEXT_RUN_TIME).apply();
+    }
+
+    /**
+     * Called when alarm goes off. Returns true if sync was started.
+     */
+    public synchronized boolean onAlarm() {
+        boolean canRun = mDeviceState.isOnUnmeteredNetwork() &&
+                mDeviceState.isCharging() && mDeviceState.isIdle();
+        if (canRun) {
+            // receiver holds wake lock only until it returns,
+            // while sync job is enqueued asynchronously
+            mWakeLock.acquire(HANDOFF_TIMEOUT);
+            mSync.run();
+            mPrefs.edit().putLong(LAST_RUN_TIME, mClock.currentTimeMillis()).apply();
+        }
+
+        setAlarm(schedule(canRun ? mInterval : mRetryDelay));
+        return canRun;
+    }
+
+    /**
+     * Returns time of last started sync or 0 if there was none.
+     */
+    public long getLastRunTime() {
+        return mPrefs.getLong(LAST_RUN_TIME, 0);
+    }
+
+    /**
+     * Returns time of next attempt or 0 if scheduler is stopped.
+     */
+    public long getNextRunTime() {
+        return mPrefs.getLong(NEXT_RUN_TIME, 0);
+    }
+
+    private static Runnable newSync(final DhisService dhisService) {
+        isNull(dhisService, "DhisService must not be null");
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                dhisService.syncMetaData();
+            }
+        };
+    }
+
+    private long schedule(long delay) {
+        long jitter = mMaxJitter > 0 ? (long) (mRandom.nextDouble() * mMaxJitter) : 0;
+        long nextRunTime = mClock.currentTimeMillis() + delay + jitter;
+        mPrefs.edit().putLong(NEXT_RUN_TIME, nextRunTime).apply();
+        return nextRunTime;
+    }
+
+    private void setAlarm(long time) {
+        // non wakeup alarm would be delivered only when screen
+        // is turned on, so the device would never be idle
+        getAlarmManager().set(AlarmManager.RTC_WAKEUP, time, getPendingIntent());
+    }
+
+    private AlarmManager getAlarmManager() {
+        return (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+    }
+
+    private PendingIntent getPendingIntent() {
+        Intent intent = new Intent(mContext, PeriodicSyncReceiver.class);
+        intent.setAction(ACTION_PERIODIC_SYNC);
+        return PendingIntent.getBroadcast(mContext, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
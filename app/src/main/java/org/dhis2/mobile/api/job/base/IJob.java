@@ -33,5 +33,6 @@ public interface IJob<T> {
     public void onStart();
     public T inBackground();
     public void onFinish(T result);
+    public void onCancel();
     public void onUnbind();
 }
\ No newline at end of file
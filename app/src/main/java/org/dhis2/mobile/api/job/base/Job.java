@@ -30,17 +30,46 @@ package org.dhis2.mobile.api.job.base;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.os.Process;
+
+import org.dhis2.mobile.sdk.network.CancellationToken;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
 
 public abstract class Job<T> extends AsyncTask<Void, Void, T> implements IJob<T> {
+    static final int STATE_PENDING = 0;
+    static final int STATE_RUNNING = 1;
+    static final int STATE_FINISHED = 2;
+    static final int STATE_CANCELLED = 3;
+
     //private final Context mContext;
     private final int mJobId;
-    private JobExecutor mJobExecutor;
+    private final JobType mJobType;
+    private final JobPriority mJobPriority;
+    private final CancellationToken mCancellationToken;
+    private volatile JobExecutor mJobExecutor;
+
+    /* bookkeeping of JobExecutor */
+    private final AtomicInteger mState = new AtomicInteger(STATE_PENDING);
+    // guarded by the JobSlot of this job id
+    private final List<Job> mJoinedJobs = new ArrayList<>();
+    private long mSequence;
+    private long mEnqueueTime;
 
     public Job(int jobId) {
+        this(jobId, JobType.CPU, JobPriority.NORMAL);
+    }
+
+    public Job(int jobId, JobType jobType, JobPriority jobPriority) {
         //mContext = isNull(context, "Context must not be null");
         mJobId = isNull(jobId, "Job ID must not be null");
+        mJobType = isNull(jobType, "JobType must not be null");
+        mJobPriority = isNull(jobPriority, "JobPriority must not be null");
+        mCancellationToken = new CancellationToken();
     }
 
     @Override
@@ -60,7 +89,15 @@ public abstract class Job<T> extends AsyncTask<Void, Void, T> implements IJob<T>
 
     @Override
     public final T doInBackground(Void... params) {
-        return inBackground();
+        // AsyncTask resets priority of worker thread to background
+        Process.setThreadPriority(mJobPriority.getThreadPriority());
+        // http requests made by this job can be aborted through the token
+        CancellationToken.attach(mCancellationToken);
+        try {
+            return inBackground();
+        } finally {
+            CancellationToken.detach();
+        }
     }
 
     @Override
@@ -68,7 +105,13 @@ public abstract class Job<T> extends AsyncTask<Void, Void, T> implements IJob<T>
         onFinish(result);
         // passing command to job executor
         // that we have finished work
-        mJobExecutor.onFinishJob(this);
+        mJobExecutor.onFinishJob(this, result, false);
+    }
+
+    @Override
+    public final void onCancelled(T result) {
+        onCancel();
+        mJobExecutor.onFinishJob(this, null, true);
     }
 
     @Override
@@ -76,6 +119,31 @@ public abstract class Job<T> extends AsyncTask<Void, Void, T> implements IJob<T>
         // overriding method here just for convenience
     }
 
+    /**
+     * Called on the main thread instead of onFinish() if job was cancelled
+     * while running, or if the job it has joined was cancelled.
+     */
+    @Override
+    public void onCancel() {
+        // overriding method here just for convenience
+    }
+
+    /**
+     * Defines what happens if a job with the same id is already enqueued.
+     */
+    public CoalescePolicy getCoalescePolicy() {
+        return CoalescePolicy.DROP_DUPLICATE;
+    }
+
+    /**
+     * Network job with positive delay is deferrable: it can be held for up
+     * to this many milliseconds, so it is sent together with other requests.
+     * Zero means the job is started immediately.
+     */
+    public long getMaxDelay() {
+        return 0;
+    }
+
     @Override
     public final void onUnbind() {
         mJobExecutor = null;
@@ -85,6 +153,63 @@ public abstract class Job<T> extends AsyncTask<Void, Void, T> implements IJob<T>
         return mJobId;
     }
 
+    public final JobType getJobType() {
+        return mJobType;
+    }
+
+    public final JobPriority getJobPriority() {
+        return mJobPriority;
+    }
+
+    final boolean compareAndSetState(int expected, int state) {
+        return mState.compareAndSet(expected, state);
+    }
+
+    final void cancelJob() {
+        mCancellationToken.cancel();
+        cancel(false);
+    }
+
+    final boolean isJobCancelled() {
+        return mCancellationToken.isCancelled();
+    }
+
+    final void addJoinedJob(Job job) {
+        mJoinedJobs.add(job);
+    }
+
+    final List<Job> removeJoinedJobs() {
+        List<Job> joinedJobs = new ArrayList<>(mJoinedJobs);
+        mJoinedJobs.clear();
+        return joinedJobs;
+    }
+
+    // jobs which share an id are expected to share the type of result
+    @SuppressWarnings("unchecked")
+    final void deliverResult(Object result, boolean cancelled) {
+        if (cancelled) {
+            onCancel();
+        } else {
+            onFinish((T) result);
+        }
+    }
+
+    final void setSequence(long sequence) {
+        mSequence = sequence;
+    }
+
+    final long getSequence() {
+        return mSequence;
+    }
+
+    final void setEnqueueTime(long enqueueTime) {
+        mEnqueueTime = enqueueTime;
+    }
+
+    final long getEnqueueTime() {
+        return mEnqueueTime;
+    }
+
     /*
     protected Context getContext() {
         return mContext;
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.job.base;
+
+/**
+ * Serializable description of a job kept in JobStore. Job itself is
+ * recreated from it by the JobFactory registered for its type.
+ */
+public final class JobDescriptor {
+    private final int mJobId;
+    private final String mType;
+    private final String mParams;
+    private final String mCheckpoint;
+    private final int mRevision;
+    private final int mAttempts;
+    private final long mNextRunTime;
+
+    JobDescriptor(int jobId, String type, String params, String checkpoint,
+                  int revision, int attempts, long nextRunTime) {
+        mJobId = jobId;
+        mType = type;
+        mParams = params;
+        mCheckpoint = checkpoint;
+        mRevision = revision;
+        mAttempts = attempts;
+        mNextRunTime = nextRunTime;
+    }
+
+    public int getJobId() {
+        return mJobId;
+    }
+
+    public String getType() {
+        return mType;
+    }
+
+    public String getParams() {
+        return mParams;
+    }
+
+    /**
+     * Last progress saved by the job, or null if it starts from scratch.
+     */
+    public String getCheckpoint() {
+        return mCheckpoint;
+    }
+
+    /**
+     * Incremented each time the job is enqueued again, so a finishing
+     * job does not remove descriptor of the request which superseded it.
+     */
+    public int getRevision() {
+        return mRevision;
+    }
+
+    public int getAttempts() {
+        return mAttempts;
+    }
+
+    /**
+     * Wall clock time in milliseconds.
+     */
+    public long getNextRunTime() {
+        return mNextRunTime;
+    }
+}
@@ -25,115 +25,624 @@
  * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
-
 package org.dhis2.mobile.api.job.base;
 
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
 
+/**
+ * Jobs can be enqueued and cancelled from any thread. Pools and pending
+ * queues are lock-free. State of each job id (the job which is pending or
+ * running, the job waiting for it and jobs which joined it) is kept in a
+ * JobSlot of a concurrent map and guarded by that slot, so jobs with
+ * different ids never contend. AsyncTask callbacks are still delivered
+ * on the main thread.
+ *
+ * Deferrable network jobs (see Job.getMaxDelay()) are held in a batch
+ * window and released together, either when the earliest of their
+ * deadlines comes or as soon as an immediate network job is started,
+ * since the radio is going to be woken up by it anyway.
+ */
 public final class JobExecutor {
     private static final String TAG = JobExecutor.class.getSimpleName();
-    private static final int MAX_RUNNING_JOBS = 64;
 
-    private static JobExecutor mJobExecutor;
+    private static final int NETWORK_POOL_SIZE = 3;
+    // SQLite serializes writes anyway
+    private static final int DISK_POOL_SIZE = 1;
+    private static final int CPU_POOL_SIZE =
+            Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final long KEEP_ALIVE_SECONDS = 30;
 
-    private Queue<Job> mPendingJobs;
-    private Queue<Job> mRunningJobs;
-    private Map<Integer, Job> mPendingJobIds;
-    private Map<Integer, Job> mRunningJobIds;
+    private final Map<JobType, JobPool> mPools;
+    private final ConcurrentMap<Integer, JobSlot> mJobs;
+    private final AtomicLong mSequence;
+    private final MainThread mMainThread;
+    private final BatchWindow mBatchWindow;
+    private final Runnable mReleaseBatch;
 
     private JobExecutor() {
-        mPendingJobs = new LinkedList<>();
-        mRunningJobs = new LinkedList<>();
+        this(new AndroidMainThread());
+    }
+
+    /* Unit tests drive the executor through their own main thread */
+    JobExecutor(MainThread mainThread) {
+        mPools = new EnumMap<>(JobType.class);
+        mPools.put(JobType.NETWORK, new JobPool(JobType.NETWORK, NETWORK_POOL_SIZE));
+        mPools.put(JobType.DISK, new JobPool(JobType.DISK, DISK_POOL_SIZE));
+        mPools.put(JobType.CPU, new JobPool(JobType.CPU, CPU_POOL_SIZE));
 
-        mPendingJobIds = new HashMap<>();
-        mRunningJobIds = new HashMap<>();
+        mJobs = new ConcurrentHashMap<>();
+        mSequence = new AtomicLong();
+        mMainThread = mainThread;
+        mBatchWindow = new BatchWindow();
+        mReleaseBatch = new Runnable() {
+
+            @Override
+            public void run() {
+                releaseBatch(false);
+            }
+        };
     }
 
     private static JobExecutor getInstance() {
-        if (mJobExecutor == null) {
-            mJobExecutor = new JobExecutor();
-        }
+        return InstanceHolder.INSTANCE;
+    }
 
-        return mJobExecutor;
+    public static <T> void enqueueJob(Job<T> job) {
+        getInstance().enqueue(job);
     }
 
-    private static <T> void run(AsyncTask<Void, Void, T> task) {
-        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    public static boolean isJobRunning(int jobId) {
+        return getInstance().isJobEnqueued(jobId);
     }
 
-    public static <T> void enqueueJob(Job<T> job) {
+    /**
+     * Pending job with given id is removed from the queue. Running one
+     * is cancelled cooperatively: its http calls are aborted and onCancel()
+     * is called instead of onFinish() once it returns.
+     */
+    public static void cancelJob(int jobId) {
+        getInstance().cancel(jobId);
+    }
+
+    public static void cancelAllJobs() {
+        getInstance().cancelAll();
+    }
+
+    public static JobStats getStats(JobType type) {
+        return getInstance().getPoolStats(type);
+    }
+
+    <T> void enqueue(Job<T> job) {
         isNull(job, "Job object must not be null");
 
-        JobExecutor executor = getInstance();
-        if (!executor.isJobEnqueued(job.getJobId())) {
-            executor.enqueuePendingJob(job);
-            executor.executeNextJob();
+        if (enqueuePendingJob(job)) {
+            executeNextJob(job.getJobType());
         }
     }
 
-    public static boolean isJobRunning(int jobId) {
-        JobExecutor executor = getInstance();
-        return executor.isJobEnqueued(jobId);
+    void cancelAll() {
+        for (Integer jobId : mJobs.keySet()) {
+            cancel(jobId);
+        }
     }
 
-    private void executeNextJob() {
-        if (mRunningJobIds.size() < MAX_RUNNING_JOBS &&
-                mPendingJobs.size() > 0) {
-            Job job = mPendingJobs.peek();
-            dequeuePendingJob(job);
-            onStartJob(job);
+    JobStats getPoolStats(JobType type) {
+        isNull(type, "JobType must not be null");
+        JobStats stats = mPools.get(type).getStats();
+        if (type == JobType.NETWORK) {
+            stats = mBatchWindow.addStats(stats);
         }
+        return stats;
     }
 
-    <T> void onStartJob(Job<T> job) {
-        bindJob(job);
-        run(job);
-    }
+    private void executeNextJob(JobType type) {
+        JobPool pool = mPools.get(type);
+        // slot is released before queue is checked again, so job which was
+        // added while we were holding the last slot is not left behind
+        while (!pool.mPendingJobs.isEmpty()) {
+            if (!pool.acquireThread()) {
+                return;
+            }
 
-    void onFinishJob(Job job) {
-        unbindJob(job);
-        executeNextJob();
+            Job job = pool.mPendingJobs.poll();
+            if (job == null || !job.compareAndSetState(Job.STATE_PENDING, Job.STATE_RUNNING)) {
+                pool.releaseThread();
+                continue;
+            }
+
+            onStartJob(job);
+        }
     }
 
-    <T> void bindJob(Job<T> job) {
+    <T> void onStartJob(final Job<T> job) {
+        mPools.get(job.getJobType()).onJobStarted(job);
+        // job has to be bound before it can be cancelled
         job.onBind(this);
-        enqueueRunningJob(job);
+        if (mMainThread.isCurrentThread()) {
+            startJob(job);
+        } else {
+            // AsyncTask has to be started on the main thread
+            mMainThread.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    startJob(job);
+                }
+            });
+        }
+    }
+
+    private <T> void startJob(Job<T> job) {
+        // job was cancelled before it was handed to AsyncTask, which
+        // is not going to call onCancelled() for a task it never ran
+        if (job.isJobCancelled()) {
+            job.onCancelled(null);
+            return;
+        }
+        mMainThread.execute(job, mPools.get(job.getJobType()).mExecutor);
     }
 
-    <T> void unbindJob(Job<T> job) {
+    void onFinishJob(Job job, Object result, boolean cancelled) {
         job.onUnbind();
-        dequeueRunningJob(job);
+
+        List<Job> joinedJobs = Collections.emptyList();
+        Job nextJob = null;
+
+        JobSlot slot = mJobs.get(job.getJobId());
+        if (slot != null) {
+            synchronized (slot) {
+                job.compareAndSetState(Job.STATE_RUNNING,
+                        cancelled ? Job.STATE_CANCELLED : Job.STATE_FINISHED);
+                if (slot.mCurrentJob == job) {
+                    joinedJobs = job.removeJoinedJobs();
+                    nextJob = slot.mNextJob;
+                    slot.mNextJob = null;
+                    if (nextJob != null) {
+                        slot.mCurrentJob = nextJob;
+                        addPendingJob(nextJob);
+                    } else {
+                        removeSlot(slot, job.getJobId());
+                    }
+                }
+            }
+        }
+
+        mPools.get(job.getJobType()).releaseThread();
+        deliverResult(joinedJobs, result, cancelled);
+
+        executeNextJob(job.getJobType());
+        if (nextJob != null && nextJob.getJobType() != job.getJobType()) {
+            executeNextJob(nextJob.getJobType());
+        }
     }
 
-    private void enqueuePendingJob(Job job) {
-        mPendingJobIds.put(job.getJobId(), job);
-        mPendingJobs.add(job);
+    private boolean enqueuePendingJob(Job job) {
+        job.setEnqueueTime(SystemClock.elapsedRealtime());
+        while (true) {
+            JobSlot slot = mJobs.get(job.getJobId());
+            if (slot == null) {
+                JobSlot newSlot = new JobSlot();
+                slot = mJobs.putIfAbsent(job.getJobId(), newSlot);
+                if (slot == null) {
+                    slot = newSlot;
+                }
+            }
+
+            synchronized (slot) {
+                // slot was released meanwhile
+                if (slot.mRemoved) {
+                    continue;
+                }
+
+                if (slot.mCurrentJob == null) {
+                    slot.mCurrentJob = job;
+                    addPendingJob(job);
+                    return true;
+                }
+
+                return coalesceJob(slot, job);
+            }
+        }
     }
 
-    private void dequeuePendingJob(Job job) {
-        mPendingJobIds.remove(job.getJobId());
-        mPendingJobs.remove(job);
+    // must be called while holding the lock of slot
+    private boolean coalesceJob(JobSlot slot, Job job) {
+        switch (job.getCoalescePolicy()) {
+            case REPLACE_PENDING: {
+                Job currentJob = slot.mCurrentJob;
+                if (currentJob.compareAndSetState(Job.STATE_PENDING, Job.STATE_CANCELLED)) {
+                    removePendingJob(currentJob);
+                    moveJoinedJobs(currentJob, job);
+                    slot.mCurrentJob = job;
+                    addPendingJob(job);
+                    return true;
+                }
+
+                // current job is already running, so new
+                // one is going to be started after it
+                if (slot.mNextJob != null) {
+                    slot.mNextJob.compareAndSetState(Job.STATE_PENDING, Job.STATE_CANCELLED);
+                    moveJoinedJobs(slot.mNextJob, job);
+                }
+                slot.mNextJob = job;
+                return false;
+            }
+            case JOIN_RUNNING: {
+                Job target = slot.mNextJob != null ? slot.mNextJob : slot.mCurrentJob;
+                target.addJoinedJob(job);
+                return false;
+            }
+            default: {
+                return false;
+            }
+        }
     }
 
-    private void enqueueRunningJob(Job job) {
-        mRunningJobIds.put(job.getJobId(), job);
-        mRunningJobs.add(job);
+    void cancel(int jobId) {
+        JobSlot slot = mJobs.get(jobId);
+        if (slot == null) {
+            return;
+        }
+
+        List<Job> joinedJobs = new ArrayList<>();
+        Job runningJob = null;
+        synchronized (slot) {
+            if (slot.mRemoved || slot.mCurrentJob == null) {
+                return;
+            }
+
+            Job nextJob = slot.mNextJob;
+            slot.mNextJob = null;
+            if (nextJob != null) {
+                nextJob.compareAndSetState(Job.STATE_PENDING, Job.STATE_CANCELLED);
+                joinedJobs.addAll(nextJob.removeJoinedJobs());
+            }
+
+            Job currentJob = slot.mCurrentJob;
+            if (currentJob.compareAndSetState(Job.STATE_PENDING, Job.STATE_CANCELLED)) {
+                removePendingJob(currentJob);
+                joinedJobs.addAll(currentJob.removeJoinedJobs());
+                removeSlot(slot, jobId);
+            } else {
+                // slot is going to be released in onFinishJob()
+                runningJob = currentJob;
+            }
+        }
+
+        if (runningJob != null) {
+            runningJob.cancelJob();
+        }
+        deliverResult(joinedJobs, null, true);
     }
 
-    private void dequeueRunningJob(Job job) {
-        mRunningJobIds.remove(job.getJobId());
-        mRunningJobs.remove(job);
+    private void addPendingJob(Job job) {
+        job.setSequence(mSequence.getAndIncrement());
+        if (job.getJobType() != JobType.NETWORK) {
+            mPools.get(job.getJobType()).mPendingJobs.add(job);
+            return;
+        }
+
+        if (job.getMaxDelay() > 0) {
+            long deadline = SystemClock.uptimeMillis() + job.getMaxDelay();
+            if (mBatchWindow.add(job, deadline)) {
+                mMainThread.removeCallbacks(mReleaseBatch);
+                mMainThread.postAtTime(mReleaseBatch, deadline);
+            }
+        } else {
+            mPools.get(JobType.NETWORK).mPendingJobs.add(job);
+            releaseBatch(true);
+        }
+    }
+
+    private void removePendingJob(Job job) {
+        if (!mPools.get(job.getJobType()).mPendingJobs.remove(job)) {
+            mBatchWindow.remove(job);
+        }
+    }
+
+    private void releaseBatch(boolean withImmediateJob) {
+        List<Job> jobs = mBatchWindow.release(withImmediateJob);
+        if (jobs.isEmpty()) {
+            return;
+        }
+
+        mMainThread.removeCallbacks(mReleaseBatch);
+        mPools.get(JobType.NETWORK).mPendingJobs.addAll(jobs);
+        Log.d(TAG, "Releasing " + jobs.size() + " deferred network jobs" +
+                (withImmediateJob ? " with immediate job" : ""));
+        if (!withImmediateJob) {
+            executeNextJob(JobType.NETWORK);
+        }
+    }
+
+    private void removeSlot(JobSlot slot, int jobId) {
+        slot.mRemoved = true;
+        slot.mCurrentJob = null;
+        mJobs.remove(jobId, slot);
+    }
+
+    private static void moveJoinedJobs(Job from, Job to) {
+        // from is a raw type, so its list has to be typed explicitly
+        List<Job> joinedJobs = from.removeJoinedJobs();
+        for (Job joinedJob : joinedJobs) {
+            to.addJoinedJob(joinedJob);
+        }
     }
 
-    private boolean isJobEnqueued(int jobId) {
-        return mPendingJobIds.get(jobId) != null ||
-                mRunningJobIds.get(jobId) != null;
+    private void deliverResult(final List<Job> jobs, final Object result,
+                               final boolean cancelled) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+
+        if (mMainThread.isCurrentThread()) {
+            for (Job job : jobs) {
+                job.deliverResult(result, cancelled);
+            }
+        } else {
+            mMainThread.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    deliverResult(jobs, result, cancelled);
+                }
+            });
+        }
+    }
+
+    boolean isJobEnqueued(int jobId) {
+        return mJobs.containsKey(jobId);
+    }
+
+    private static class InstanceHolder {
+        static final JobExecutor INSTANCE = new JobExecutor();
+    }
+
+    /**
+     * Main thread of the app: AsyncTask callbacks of jobs, results
+     * of joined jobs and release of batch window are delivered on it.
+     */
+    interface MainThread {
+        boolean isCurrentThread();
+
+        void post(Runnable runnable);
+
+        void postAtTime(Runnable runnable, long uptimeMillis);
+
+        void removeCallbacks(Runnable runnable);
+
+        /* Called on the main thread */
+        <T> void execute(Job<T> job, Executor executor);
+    }
+
+    static class AndroidMainThread implements MainThread {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public boolean isCurrentThread() {
+            return Looper.myLooper() == Looper.getMainLooper();
+        }
+
+        @Override
+        public void post(Runnable runnable) {
+            mHandler.post(runnable);
+        }
+
+        @Override
+        public void postAtTime(Runnable runnable, long uptimeMillis) {
+            mHandler.postAtTime(runnable, uptimeMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            mHandler.removeCallbacks(runnable);
+        }
+
+        @Override
+        public <T> void execute(Job<T> job, Executor executor) {
+            job.executeOnExecutor(executor);
+        }
+    }
+
+    /**
+     * Jobs registered under one job id. Current job is either pending in
+     * the queue of its pool or running, next job waits until current one
+     * finishes. Removed slot must not be reused.
+     * <p/>
+     * Slot is guarded by its own monitor rather than by CAS on a state
+     * field: transitions update the current and next job, the pending
+     * queue and joined jobs together, and the lock is held only by
+     * threads which work with the same job id.
+     */
+    static class JobSlot {
+        Job mCurrentJob;
+        Job mNextJob;
+        boolean mRemoved;
+    }
+
+    /**
+     * Deferred network jobs which wait to be released together. Each release
+     * counts as one radio wakeup, so every job released with others (or with
+     * an immediate job) is a wakeup avoided.
+     */
+    static class BatchWindow {
+        private final List<Job> mJobs = new ArrayList<>();
+        private long mDeadline = Long.MAX_VALUE;
+
+        private long mDeferredJobs;
+        private long mReleasedBatches;
+        private long mAvoidedWakeups;
+
+        /**
+         * Returns true if the window has to be released earlier than before.
+         */
+        synchronized boolean add(Job job, long deadline) {
+            mJobs.add(job);
+            mDeferredJobs++;
+            if (deadline < mDeadline) {
+                mDeadline = deadline;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void remove(Job job) {
+            mJobs.remove(job);
+            if (mJobs.isEmpty()) {
+                mDeadline = Long.MAX_VALUE;
+            }
+        }
+
+        synchronized List<Job> release(boolean withImmediateJob) {
+            if (mJobs.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            List<Job> jobs = new ArrayList<>(mJobs);
+            mJobs.clear();
+            mDeadline = Long.MAX_VALUE;
+            mReleasedBatches++;
+            mAvoidedWakeups += withImmediateJob ? jobs.size() : jobs.size() - 1;
+            return jobs;
+        }
+
+        synchronized JobStats addStats(JobStats stats) {
+            return stats.withBatchWindow(mJobs.size(), mDeferredJobs,
+                    mReleasedBatches, mAvoidedWakeups);
+        }
+    }
+
+    /**
+     * Pending jobs are ordered by priority first and
+     * by the order in which they were enqueued second.
+     */
+    static class JobComparator implements Comparator<Job> {
+
+        @Override
+        public int compare(Job first, Job second) {
+            int priority = first.getJobPriority().compareTo(second.getJobPriority());
+            if (priority != 0) {
+                return priority;
+            }
+            return first.getSequence() < second.getSequence() ? -1 :
+                    (first.getSequence() == second.getSequence() ? 0 : 1);
+        }
+    }
+
+    /**
+     * Jobs are handed to the thread pool only when it has a free
+     * thread, so the order is decided by mPendingJobs and not by
+     * the FIFO work queue of ThreadPoolExecutor.
+     */
+    static class JobPool {
+        private final JobType mType;
+        private final int mSize;
+        private final Executor mExecutor;
+        private final Queue<Job> mPendingJobs;
+
+        private final AtomicInteger mRunningJobs;
+        private final AtomicLong mStartedJobs;
+        private final AtomicLong mTotalWaitTime;
+        private final AtomicLong mMaxWaitTime;
+
+        JobPool(JobType type, int size) {
+            mType = type;
+            mSize = size;
+            mPendingJobs = new PriorityBlockingQueue<>(11, new JobComparator());
+
+            mRunningJobs = new AtomicInteger();
+            mStartedJobs = new AtomicLong();
+            mTotalWaitTime = new AtomicLong();
+            mMaxWaitTime = new AtomicLong();
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new JobThreadFactory(type.name().toLowerCase(Locale.US)));
+            executor.allowCoreThreadTimeOut(true);
+            mExecutor = executor;
+        }
+
+        boolean acquireThread() {
+            while (true) {
+                int running = mRunningJobs.get();
+                if (running >= mSize) {
+                    return false;
+                }
+                if (mRunningJobs.compareAndSet(running, running + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void releaseThread() {
+            mRunningJobs.decrementAndGet();
+        }
+
+        void onJobStarted(Job job) {
+            long waitTime = SystemClock.elapsedRealtime() - job.getEnqueueTime();
+            mStartedJobs.incrementAndGet();
+            mTotalWaitTime.addAndGet(waitTime);
+            while (true) {
+                long maxWaitTime = mMaxWaitTime.get();
+                if (waitTime <= maxWaitTime ||
+                        mMaxWaitTime.compareAndSet(maxWaitTime, waitTime)) {
+                    break;
+                }
+            }
+
+            Log.d(TAG, "Starting job " + job.getJobId() + " (" + job.getJobPriority() +
+                    ") after " + waitTime + "ms, " + mPendingJobs.size() + " " + mType + " jobs pending");
+        }
+
+        JobStats getStats() {
+            return new JobStats(mType, mSize, mPendingJobs.size(), mRunningJobs.get(),
+                    mStartedJobs.get(), mTotalWaitTime.get(), mMaxWaitTime.get());
+        }
+    }
+
+    static class JobThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+        private final String mName;
+
+        JobThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "job-" + mName + "-" + mCount.getAndIncrement());
+        }
     }
-}
\ No newline at end of file
+}
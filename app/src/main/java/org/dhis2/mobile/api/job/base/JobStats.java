@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.job.base;
+
+/**
+ * Snapshot of the state of one JobExecutor pool.
+ * Wait time is measured from enqueueJob() until job is started.
+ * Batch window counters are set for network pool only.
+ */
+public final class JobStats {
+    private final JobType mType;
+    private final int mPoolSize;
+    private final int mPendingJobs;
+    private final int mRunningJobs;
+    private final long mStartedJobs;
+    private final long mTotalWaitTime;
+    private final long mMaxWaitTime;
+    private final int mHeldJobs;
+    private final long mDeferredJobs;
+    private final long mReleasedBatches;
+    private final long mAvoidedWakeups;
+
+    JobStats(JobType type, int poolSize, int pendingJobs, int runningJobs,
+             long startedJobs, long totalWaitTime, long maxWaitTime) {
+        this(type, poolSize, pendingJobs, runningJobs, startedJobs,
+                totalWaitTime, maxWaitTime, 0, 0, 0, 0);
+    }
+
+    private JobStats(JobType type, int poolSize, int pendingJobs, int runningJobs,
+                     long startedJobs, long totalWaitTime, long maxWaitTime,
+                     int heldJobs, long deferredJobs, long releasedBatches, long avoidedWakeups) {
+        mType = type;
+        mPoolSize = poolSize;
+        mPendingJobs = pendingJobs;
+        mRunningJobs = runningJobs;
+        mStartedJobs = startedJobs;
+        mTotalWaitTime = totalWaitTime;
+        mMaxWaitTime = maxWaitTime;
+        mHeldJobs = heldJobs;
+        mDeferredJobs = deferredJobs;
+        mReleasedBatches = releasedBatches;
+        mAvoidedWakeups = avoidedWakeups;
+    }
+
+    JobStats withBatchWindow(int heldJobs, long deferredJobs,
+                             long releasedBatches, long avoidedWakeups) {
+        return new JobStats(mType, mPoolSize, mPendingJobs, mRunningJobs, mStartedJobs,
+                mTotalWaitTime, mMaxWaitTime, heldJobs, deferredJobs, releasedBatches, avoidedWakeups);
+    }
+
+    public JobType getType() {
+        return mType;
+    }
+
+    public int getPoolSize() {
+        return mPoolSize;
+    }
+
+    /**
+     * Queue depth: number of jobs waiting for a free thread.
+     */
+    public int getPendingJobs() {
+        return mPendingJobs;
+    }
+
+    public int getRunningJobs() {
+        return mRunningJobs;
+    }
+
+    public long getStartedJobs() {
+        return mStartedJobs;
+    }
+
+    /**
+     * @return average wait time in milliseconds.
+     */
+    public long getAverageWaitTime() {
+        return mStartedJobs > 0 ? mTotalWaitTime / mStartedJobs : 0;
+    }
+
+    /**
+     * @return maximum wait time in milliseconds.
+     */
+    public long getMaxWaitTime() {
+        return mMaxWaitTime;
+    }
+
+    /**
+     * Number of deferred jobs which are currently held in batch window.
+     */
+    public int getHeldJobs() {
+        return mHeldJobs;
+    }
+
+    public long getDeferredJobs() {
+        return mDeferredJobs;
+    }
+
+    public long getReleasedBatches() {
+        return mReleasedBatches;
+    }
+
+    /**
+     * Number of deferred jobs which did not need radio wakeup of their
+     * own, because they were released together with other jobs.
+     */
+    public long getAvoidedWakeups() {
+        return mAvoidedWakeups;
+    }
+
+    @Override
+    public String toString() {
+        return mType + "[pool=" + mPoolSize + ", pending=" + mPendingJobs +
+                ", running=" + mRunningJobs + ", started=" + mStartedJobs +
+                ", avgWait=" + getAverageWaitTime() + "ms, maxWait=" + mMaxWaitTime + "ms" +
+                ", held=" + mHeldJobs + ", deferred=" + mDeferredJobs +
+                ", batches=" + mReleasedBatches + ", avoidedWakeups=" + mAvoidedWakeups + "]";
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.job.base;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable storage of job descriptors. It lives in its own database next
+ * to dhis2.db, so wiping metadata does not drop queued work and vice versa.
+ */
+public final class JobStore extends SQLiteOpenHelper {
+    private static final String DB_NAME = "jobs.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_NAME = "jobsTable";
+    private static final String JOB_ID = "jobId";
+    private static final String TYPE = "type";
+    private static final String PARAMS = "params";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String REVISION = "revision";
+    private static final String ATTEMPTS = "attempts";
+    private static final String NEXT_RUN_TIME = "nextRunTime";
+
+    private static final String[] PROJECTION = new String[]{
+            JOB_ID, TYPE, PARAMS, CHECKPOINT, REVISION, ATTEMPTS, NEXT_RUN_TIME
+    };
+
+    private static final String CREATE_JOBS_TABLE = "CREATE TABLE " + TABLE_NAME + "(" +
+            JOB_ID + " INTEGER PRIMARY KEY," +
+            TYPE + " TEXT NOT NULL," +
+            PARAMS + " TEXT," +
+            CHECKPOINT + " TEXT," +
+            REVISION + " INTEGER NOT NULL DEFAULT 0," +
+            ATTEMPTS + " INTEGER NOT NULL DEFAULT 0," +
+            NEXT_RUN_TIME + " INTEGER NOT NULL DEFAULT 0" + ")";
+
+    private static final String DROP_JOBS_TABLE = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+    private static final String WHERE_JOB_ID = JOB_ID + " = ?";
+    private static final String WHERE_REVISION = JOB_ID + " = ? AND " + REVISION + " = ?";
+
+    public JobStore(Context context) {
+        super(context, DB_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL(CREATE_JOBS_TABLE);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL(DROP_JOBS_TABLE);
+        onCreate(db);
+    }
+
+    /**
+     * Inserts new descriptor or updates existing one with the same job id.
+     * Checkpoint is kept only if type of the job remains the same.
+     */
+    public JobDescriptor put(int jobId, String type, String params) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            JobDescriptor existing = get(db, jobId);
+
+            ContentValues values = new ContentValues();
+            values.put(TYPE, type);
+            values.put(PARAMS, params);
+            values.put(ATTEMPTS, 0);
+            values.put(NEXT_RUN_TIME, 0);
+            if (existing == null) {
+                values.put(JOB_ID, jobId);
+                values.put(REVISION, 0);
+                db.insert(TABLE_NAME, null, values);
+            } else {
+                values.put(REVISION, existing.getRevision() + 1);
+                if (!type.equals(existing.getType())) {
+                    values.putNull(CHECKPOINT);
+                }
+                db.update(TABLE_NAME, values, WHERE_JOB_ID, args(jobId));
+            }
+
+            JobDescriptor descriptor = get(db, jobId);
+            db.setTransactionSuccessful();
+            return descriptor;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public JobDescriptor get(int jobId) {
+        return get(getReadableDatabase(), jobId);
+    }
+
+    public List<JobDescriptor> getAll() {
+        Cursor cursor = getReadableDatabase().query(TABLE_NAME, PROJECTION,
+                null, null, null, null, NEXT_RUN_TIME);
+        List<JobDescriptor> descriptors = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                descriptors.add(map(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return descriptors;
+    }
+
+    public void putCheckpoint(int jobId, String checkpoint) {
+        ContentValues values = new ContentValues();
+        values.put(CHECKPOINT, checkpoint);
+        getWritableDatabase().update(TABLE_NAME, values, WHERE_JOB_ID, args(jobId));
+    }
+
+    /**
+     * Records start of the given revision of the job.
+     *
+     * @return false if descriptor was removed or superseded meanwhile.
+     */
+    public boolean putAttempt(JobDescriptor descriptor, long nextRunTime) {
+        ContentValues values = new ContentValues();
+        values.put(ATTEMPTS, descriptor.getAttempts() + 1);
+        values.put(NEXT_RUN_TIME, nextRunTime);
+        return getWritableDatabase().update(TABLE_NAME, values, WHERE_REVISION,
+                args(descriptor.getJobId(), descriptor.getRevision())) > 0;
+    }
+
+    public void remove(int jobId, int revision) {
+        getWritableDatabase().delete(TABLE_NAME, WHERE_REVISION, args(jobId, revision));
+    }
+
+    public void removeAll() {
+        getWritableDatabase().delete(TABLE_NAME, null, null);
+    }
+
+    private static JobDescriptor get(SQLiteDatabase db, int jobId) {
+        Cursor cursor = db.query(TABLE_NAME, PROJECTION, WHERE_JOB_ID,
+                args(jobId), null, null, null);
+        try {
+            return cursor.moveToFirst() ? map(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static JobDescriptor map(Cursor cursor) {
+        return new JobDescriptor(
+                cursor.getInt(0), cursor.getString(1), cursor.getString(2),
+                cursor.getString(3), cursor.getInt(4), cursor.getInt(5),
+                cursor.getLong(6)
+        );
+    }
+
+    private static String[] args(int... values) {
+        String[] args = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            args[i] = String.valueOf(values[i]);
+        }
+        return args;
+    }
+}
@@ -34,7 +34,11 @@ import org.dhis2.mobile.utils.EventBus;
 
 public abstract class NetworkJob<T> extends Job<ResponseHolder<T>> {
     public NetworkJob(int jobId) {
-        super(jobId);
+        this(jobId, JobPriority.NORMAL);
+    }
+
+    public NetworkJob(int jobId, JobPriority jobPriority) {
+        super(jobId, JobType.NETWORK, jobPriority);
     }
 
     @Override
@@ -63,12 +67,16 @@ public abstract class NetworkJob<T> extends Job<ResponseHolder<T>> {
         }
     }
 
+    /**
+     * Result is sticky, so screen which was paused when job finished gets
+     * it once resumed. Subscriber which consumes it removes the sticky event.
+     */
     public void onSuccess(T item) {
-        EventBus.post(item);
+        EventBus.postSticky(item);
     }
 
     public void onFailure(APIException exception) {
-        EventBus.post(exception);
+        EventBus.postSticky(exception);
     }
 
     public abstract T execute() throws APIException;
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.job.base;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import org.dhis2.mobile.sdk.network.APIException;
+
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Optional durable front of JobExecutor. Descriptors of enqueued jobs are
+ * stored in JobStore until jobs succeed, so work interrupted by death of
+ * the process can be resumed on the next start of application. Failed
+ * and resumed jobs are retried with exponential backoff.
+ *
+ * JobStore is accessed on a single background thread, which keeps
+ * its operations in order and the main thread free of disk I/O. Jobs
+ * are handed to JobExecutor only after their descriptor is written.
+ */
+public final class PersistentJobQueue {
+    private static final String TAG = PersistentJobQueue.class.getSimpleName();
+
+    private static final long BASE_BACKOFF = 30 * 1000;
+    private static final long MAX_BACKOFF = 60 * 60 * 1000;
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final JobStore mJobStore;
+    private final Map<String, JobFactory> mFactories;
+    private final Handler mHandler;
+    private final Executor mStoreExecutor;
+    // incremented by clear(), so work requested before it is dropped
+    private final AtomicInteger mGeneration;
+
+    public PersistentJobQueue(JobStore jobStore) {
+        mJobStore = isNull(jobStore, "JobStore must not be null");
+        mFactories = new ConcurrentHashMap<>();
+        mHandler = new Handler(Looper.getMainLooper());
+        mStoreExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, TAG);
+            }
+        });
+        mGeneration = new AtomicInteger();
+    }
+
+    public void registerFactory(String type, JobFactory factory) {
+        isNull(type, "Job type must not be null");
+        isNull(factory, "JobFactory must not be null");
+        mFactories.put(type, factory);
+    }
+
+    public void enqueue(final int jobId, final String type, final String params) {
+        isNull(type, "Job type must not be null");
+        execute(new StoreTask() {
+
+            @Override
+            public void run(int generation) {
+                start(mJobStore.put(jobId, type, params), generation);
+            }
+        });
+    }
+
+    /**
+     * Schedules jobs left over from previous run of application.
+     * Should be called once all factories are registered.
+     */
+    public void resume() {
+        execute(new StoreTask() {
+
+            @Override
+            public void run(int generation) {
+                long now = System.currentTimeMillis();
+                List<JobDescriptor> descriptors = mJobStore.getAll();
+                for (JobDescriptor descriptor : descriptors) {
+                    schedule(descriptor, Math.max(0, descriptor.getNextRunTime() - now));
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops both scheduled retries and stored descriptors.
+     */
+    public void clear() {
+        mGeneration.incrementAndGet();
+        mHandler.removeCallbacksAndMessages(null);
+        mStoreExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                mJobStore.removeAll();
+            }
+        });
+    }
+
+    /**
+     * Called on the thread of running job, so it is written synchronously.
+     */
+    public void putCheckpoint(int jobId, String checkpoint) {
+        mJobStore.putCheckpoint(jobId, checkpoint);
+    }
+
+    void onJobSucceeded(JobDescriptor descriptor) {
+        remove(descriptor);
+    }
+
+    void onJobCancelled(JobDescriptor descriptor) {
+        remove(descriptor);
+    }
+
+    void onJobFailed(final JobDescriptor descriptor, APIException exception) {
+        // attempt of this start is already counted
+        int attempts = descriptor.getAttempts() + 1;
+        if (!isRetryable(exception) || attempts >= MAX_ATTEMPTS) {
+            remove(descriptor);
+            return;
+        }
+
+        execute(new StoreTask() {
+
+            @Override
+            public void run(int generation) {
+                JobDescriptor stored = mJobStore.get(descriptor.getJobId());
+                if (stored != null && stored.getRevision() == descriptor.getRevision()) {
+                    schedule(stored, Math.max(0, stored.getNextRunTime() -
+                            System.currentTimeMillis()));
+                }
+            }
+        });
+    }
+
+    private void remove(final JobDescriptor descriptor) {
+        execute(new StoreTask() {
+
+            @Override
+            public void run(int generation) {
+                mJobStore.remove(descriptor.getJobId(), descriptor.getRevision());
+            }
+        });
+    }
+
+    private void schedule(final JobDescriptor descriptor, long delay) {
+        Log.d(TAG, "Scheduling job " + descriptor.getJobId() + " in " + delay + "ms");
+        mHandler.postDelayed(new Runnable() {
+
+            @Override
+            public void run() {
+                execute(new StoreTask() {
+
+                    @Override
+                    public void run(int generation) {
+                        start(descriptor, generation);
+                    }
+                });
+            }
+        }, delay);
+    }
+
+    // called on the store thread
+    private void start(JobDescriptor descriptor, int generation) {
+        JobFactory factory = mFactories.get(descriptor.getType());
+        Job<?> job = factory != null ? factory.create(descriptor, this) : null;
+        if (job == null) {
+            mJobStore.remove(descriptor.getJobId(), descriptor.getRevision());
+            return;
+        }
+
+        // attempt is counted before job runs, so if process
+        // dies meanwhile, the job is resumed after backoff too
+        long nextRunTime = System.currentTimeMillis() + getBackoff(descriptor.getAttempts() + 1);
+        if (mJobStore.putAttempt(descriptor, nextRunTime) &&
+                generation == mGeneration.get()) {
+            JobExecutor.enqueueJob(job);
+        }
+    }
+
+    /**
+     * Runs task on the store thread, unless clear() is called before it gets there.
+     */
+    private void execute(final StoreTask task) {
+        final int generation = mGeneration.get();
+        mStoreExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                if (generation == mGeneration.get()) {
+                    task.run(generation);
+                }
+            }
+        });
+    }
+
+    private static long getBackoff(int attempts) {
+        long backoff = BASE_BACKOFF << Math.min(attempts - 1, 16);
+        return Math.min(backoff, MAX_BACKOFF);
+    }
+
+    private interface StoreTask {
+        void run(int generation);
+    }
+
+    private static boolean isRetryable(APIException exception) {
+        if (exception == null || exception.isCancelled()) {
+            return false;
+        }
+
+        if (exception.isNetworkError()) {
+            return true;
+        }
+
+        return exception.isHttpError() && exception.getResponse() != null &&
+                exception.getResponse().getStatus() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.job.base;
+
+import org.dhis2.mobile.sdk.network.APIException;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * NetworkJob which reports its outcome to PersistentJobQueue,
+ * so its descriptor is kept until the work is done.
+ */
+public abstract class PersistentNetworkJob<T> extends NetworkJob<T> {
+    private final JobDescriptor mDescriptor;
+    private final PersistentJobQueue mJobQueue;
+
+    public PersistentNetworkJob(JobDescriptor descriptor,
+                                PersistentJobQueue jobQueue, JobPriority jobPriority) {
+        super(isNull(descriptor, "JobDescriptor must not be null").getJobId(), jobPriority);
+        mDescriptor = descriptor;
+        mJobQueue = isNull(jobQueue, "PersistentJobQueue must not be null");
+    }
+
+    public JobDescriptor getDescriptor() {
+        return mDescriptor;
+    }
+
+    /**
+     * Stores progress of the job. Can be called from background thread.
+     */
+    protected void putCheckpoint(String checkpoint) {
+        mJobQueue.putCheckpoint(mDescriptor.getJobId(), checkpoint);
+    }
+
+    @Override
+    public void onSuccess(T item) {
+        mJobQueue.onJobSucceeded(mDescriptor);
+        super.onSuccess(item);
+    }
+
+    @Override
+    public void onFailure(APIException exception) {
+        mJobQueue.onJobFailed(mDescriptor, exception);
+        super.onFailure(exception);
+    }
+
+    @Override
+    public void onCancel() {
+        mJobQueue.onJobCancelled(mDescriptor);
+    }
+}
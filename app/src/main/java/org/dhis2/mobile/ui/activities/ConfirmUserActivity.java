@@ -43,6 +43,7 @@ import org.dhis2.mobile.R;
 import org.dhis2.mobile.sdk.entities.UserAccount;
 import org.dhis2.mobile.sdk.network.APIException;
 import org.dhis2.mobile.sdk.network.models.Credentials;
+import org.dhis2.mobile.utils.EventBus;
 
 import butterknife.ButterKnife;
 import butterknife.InjectView;
@@ -123,12 +124,14 @@ public class ConfirmUserActivity extends BaseActivity {
 
     @Subscribe
     public void onSuccess(UserAccount userAccount) {
+        EventBus.removeStickyEvent(UserAccount.class);
         startActivity(new Intent(this, LauncherActivity.class));
         finish();
     }
 
     @Subscribe
     public void onFailure(APIException apiException) {
+        EventBus.removeStickyEvent(APIException.class);
         hideProgress(true);
         showApiExceptionMessage(apiException);
     }
@@ -36,10 +36,12 @@ import android.widget.BaseAdapter;
 import android.widget.TextView;
 
 import org.dhis2.mobile.R;
+import org.dhis2.mobile.sdk.persistence.loaders.PagedList;
+import org.dhis2.mobile.sdk.persistence.loaders.PagedList.OnPageLoadedListener;
 
 import java.util.List;
 
-public class SimpleAdapter<T> extends BaseAdapter {
+public class SimpleAdapter<T> extends BaseAdapter implements OnPageLoadedListener {
     private List<T> mItems;
     private LayoutInflater mInflater;
     private ExtractStringCallback<T> mCallback;
@@ -69,7 +71,9 @@ public class SimpleAdapter<T> extends BaseAdapter {
             holder = (TextViewHolder) view.getTag();
         }
 
-        String label = mCallback.getString(mItems.get(position));
+        // item can be null while its page is being loaded
+        T item = mItems.get(position);
+        String label = item != null ? mCallback.getString(item) : null;
         holder.textView.setText(label);
         return view;
     }
@@ -103,11 +107,24 @@ public class SimpleAdapter<T> extends BaseAdapter {
 
     public void swapData(List<T> items) {
         if (mItems != items) {
+            if (mItems instanceof PagedList) {
+                ((PagedList) mItems).setOnPageLoadedListener(null);
+            }
+
             mItems = items;
+            if (mItems instanceof PagedList) {
+                ((PagedList) mItems).setOnPageLoadedListener(this);
+            }
+
             notifyDataSetChanged();
         }
     }
 
+    @Override
+    public void onPageLoaded() {
+        notifyDataSetChanged();
+    }
+
     public static interface ExtractStringCallback<T> {
         public String getString(T object);
     }
@@ -28,9 +28,7 @@
 
 package org.dhis2.mobile.ui.fragments.aggregate;
 
-import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.support.v4.app.LoaderManager.LoaderCallbacks;
 import android.support.v4.content.Loader;
@@ -45,12 +43,12 @@ import android.widget.Toast;
 import com.squareup.otto.Subscribe;
 
 import org.dhis2.mobile.R;
+import org.dhis2.mobile.api.date.PeriodAvailabilityCache;
 import org.dhis2.mobile.api.models.DateHolder;
+import org.dhis2.mobile.api.models.MetaDataSyncResult;
 import org.dhis2.mobile.sdk.network.APIException;
 import org.dhis2.mobile.sdk.persistence.database.DbContract.OrganisationUnits;
-import org.dhis2.mobile.sdk.persistence.handlers.OrganisationUnitHandler;
 import org.dhis2.mobile.sdk.persistence.loaders.CursorLoaderBuilder;
-import org.dhis2.mobile.sdk.persistence.loaders.Transformation;
 import org.dhis2.mobile.ui.activities.ReportEntryActivity;
 import org.dhis2.mobile.ui.fragments.BaseFragment;
 import org.dhis2.mobile.ui.fragments.aggregate.DataSetDialogFragment.OnDatasetSetListener;
@@ -58,6 +56,7 @@ import org.dhis2.mobile.ui.fragments.aggregate.OrgUnitDialogFragment.OnOrgUnitSe
 import org.dhis2.mobile.ui.fragments.aggregate.PeriodDialogFragment.OnPeriodSetListener;
 import org.dhis2.mobile.ui.views.CardDetailedButton;
 import org.dhis2.mobile.ui.views.CardTextViewButton;
+import org.dhis2.mobile.utils.EventBus;
 
 import butterknife.ButterKnife;
 import butterknife.InjectView;
@@ -119,6 +118,7 @@ public class AggregateReportFragment extends BaseFragment
     public boolean onOptionsItemSelected(MenuItem menuItem) {
         if (menuItem.getItemId() == R.id.refresh) {
             getDhisService().syncMetaData();
+            setSyncInProcess(true);
             Toast.makeText(getActivity(), "Syncing meta data",
                     Toast.LENGTH_SHORT).show();
             return true;
@@ -236,25 +236,45 @@ public class AggregateReportFragment extends BaseFragment
                 break;
             }
             case R.id.data_entry_button: {
+                long serverTime = getDhisManager().getServerClock().currentTimeMillis();
+                if (!PeriodAvailabilityCache.getInstance().isOpen(mState.getDataSetId(),
+                        mState.getPeriod().getDate(), serverTime)) {
+                    Toast.makeText(getActivity(), R.string.period_closed,
+                            Toast.LENGTH_SHORT).show();
+                    break;
+                }
+                getDhisManager().onDataEntry(mState.getOrgUnitId());
                 // startReportEntryActivity();
                 break;
             }
         }
     }
 
+    @Subscribe
+    public void onMetaDataSynced(MetaDataSyncResult result) {
+        EventBus.removeStickyEvent(MetaDataSyncResult.class);
+        setSyncInProcess(false);
+    }
+
     @Subscribe
     public void onApiException(APIException apiException) {
+        EventBus.removeStickyEvent(APIException.class);
+        setSyncInProcess(false);
         apiException.printStackTrace();
     }
 
+    private void setSyncInProcess(boolean syncInProcess) {
+        mState.setSyncInProcess(syncInProcess);
+        mProgressBar.setVisibility(syncInProcess ? View.VISIBLE : View.INVISIBLE);
+    }
+
 
     @Override
     public Loader<Boolean> onCreateLoader(int id, Bundle bundle) {
         if (id == LOADER_ID) {
             return CursorLoaderBuilder.forUri(OrganisationUnits.CONTENT_URI)
-                    .projection(OrganisationUnitHandler.PROJECTION)
-                    .transformation(new OrgUnitTransformation())
-                    .build(getActivity());
+                    .exists()
+                    .buildShared(getActivity());
         }
         return null;
     }
@@ -293,12 +313,4 @@ public class AggregateReportFragment extends BaseFragment
     @Override
     public void onLoaderReset(Loader<Boolean> booleanLoader) {
     }
-
-    static class OrgUnitTransformation implements Transformation<Boolean> {
-
-        @Override
-        public Boolean transform(Context context, Cursor cursor) {
-            return (cursor != null && cursor.getCount() > 0);
-        }
-    }
 }
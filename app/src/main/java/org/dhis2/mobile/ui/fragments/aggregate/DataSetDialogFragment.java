@@ -28,7 +28,6 @@
 
 package org.dhis2.mobile.ui.fragments.aggregate;
 
-import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
@@ -47,7 +46,7 @@ import org.dhis2.mobile.sdk.persistence.database.DbContract;
 import org.dhis2.mobile.sdk.persistence.database.DbContract.UnitDataSets;
 import org.dhis2.mobile.sdk.persistence.handlers.DataSetHandler;
 import org.dhis2.mobile.sdk.persistence.loaders.CursorLoaderBuilder;
-import org.dhis2.mobile.sdk.persistence.loaders.Transformation;
+import org.dhis2.mobile.sdk.persistence.loaders.LazyTransformation;
 import org.dhis2.mobile.ui.adapters.SimpleAdapter;
 
 import java.util.List;
@@ -135,6 +134,8 @@ public class DataSetDialogFragment extends DialogFragment implements LoaderManag
 
     @Override
     public void onLoaderReset(Loader<List<DataSet>> listLoader) {
+        // list reads rows of cursor, which is closed by now
+        mAdapter.swapData(null);
     }
 
     public void setOnClickListener(OnDatasetSetListener listener) {
@@ -149,11 +150,15 @@ public class DataSetDialogFragment extends DialogFragment implements LoaderManag
         public void onDataSetSelected(String dataSetId, String dataSetName);
     }
 
-    static class DataSetTransform implements Transformation<List<DataSet>> {
+    /**
+     * Rows are mapped as the list is scrolled. Mapped data sets are
+     * recycled, so clicked one is read at once and not kept.
+     */
+    static class DataSetTransform extends LazyTransformation<DataSet> {
 
         @Override
-        public List<DataSet> transform(Context context, Cursor cursor) {
-            return DataSetHandler.map(cursor, false);
+        public DataSet map(Cursor cursor, DataSet recycled) {
+            return DataSetHandler.fromCursor(cursor, recycled);
         }
     }
 
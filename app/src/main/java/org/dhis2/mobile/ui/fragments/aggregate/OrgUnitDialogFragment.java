@@ -28,8 +28,8 @@
 
 package org.dhis2.mobile.ui.fragments.aggregate;
 
-import android.content.Context;
 import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.FragmentManager;
@@ -38,30 +38,58 @@ import android.support.v4.content.Loader;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.HorizontalScrollView;
+import android.widget.LinearLayout;
 import android.widget.ListView;
+import android.widget.TextView;
 
 import org.dhis2.mobile.R;
 import org.dhis2.mobile.sdk.entities.OrganisationUnit;
 import org.dhis2.mobile.sdk.persistence.database.DbContract.OrganisationUnits;
 import org.dhis2.mobile.sdk.persistence.handlers.OrganisationUnitHandler;
 import org.dhis2.mobile.sdk.persistence.loaders.CursorLoaderBuilder;
-import org.dhis2.mobile.sdk.persistence.loaders.Transformation;
+import org.dhis2.mobile.sdk.persistence.loaders.PagedList;
+import org.dhis2.mobile.sdk.persistence.loaders.RowMapper;
 import org.dhis2.mobile.ui.adapters.SimpleAdapter;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import butterknife.ButterKnife;
 import butterknife.InjectView;
+import butterknife.OnClick;
 import butterknife.OnItemClick;
 
-public class OrgUnitDialogFragment extends DialogFragment implements LoaderCallbacks<List<OrganisationUnit>> {
+/**
+ * Picker which walks organisation unit hierarchy. Only units assigned to
+ * user are loaded first, children are queried by parent id when unit is
+ * opened, so the dialog opens equally fast for any size of hierarchy.
+ * Units of a level are read page by page as the list is scrolled, since
+ * one level can hold thousands of facilities.
+ */
+public class OrgUnitDialogFragment extends DialogFragment implements LoaderCallbacks<PagedList<OrgUnitDialogFragment.UnitNode>> {
     private static final String TAG = OrgUnitDialogFragment.class.getName();
     private static final int LOADER_ID = 243756345;
 
+    private static final String ARG_PARENT_ID = "arg:parentId";
+    private static final String STATE_PATH_IDS = "state:pathIds";
+    private static final String STATE_PATH_LABELS = "state:pathLabels";
+    private static final String BREADCRUMB_SEPARATOR = " \u203A ";
+    // appended to units which can be opened
+    private static final String HAS_CHILDREN_MARK = " \u203A";
+
     @InjectView(R.id.simple_listview) ListView mListView;
-    private SimpleAdapter<OrganisationUnit> mAdapter;
+    @InjectView(R.id.breadcrumbs_scroll) HorizontalScrollView mBreadcrumbsScroll;
+    @InjectView(R.id.breadcrumbs) LinearLayout mBreadcrumbs;
+    @InjectView(R.id.select_unit) Button mSelectButton;
+
+    private SimpleAdapter<UnitNode> mAdapter;
     private OnOrgUnitSetListener mListener;
 
+    // opened units, from assigned one down to the shown one
+    private final List<UnitNode> mPath = new ArrayList<>();
+
     public static OrgUnitDialogFragment newInstance(OnOrgUnitSetListener listener) {
         OrgUnitDialogFragment fragment = new OrgUnitDialogFragment();
         fragment.setOnClickListener(listener);
@@ -73,11 +101,21 @@ public class OrgUnitDialogFragment extends DialogFragment implements LoaderCallb
         super.onCreate(savedInstanceState);
         setStyle(DialogFragment.STYLE_NO_TITLE,
                 R.style.Theme_AppCompat_Light_Dialog);
+
+        if (savedInstanceState != null) {
+            List<String> ids = savedInstanceState.getStringArrayList(STATE_PATH_IDS);
+            List<String> labels = savedInstanceState.getStringArrayList(STATE_PATH_LABELS);
+            if (ids != null && labels != null) {
+                for (int i = 0; i < ids.size(); i++) {
+                    mPath.add(new UnitNode(ids.get(i), labels.get(i), true));
+                }
+            }
+        }
     }
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-        View view = inflater.inflate(R.layout.dialog_fragment_listview, container, false);
+        View view = inflater.inflate(R.layout.dialog_fragment_org_unit_tree, container, false);
         ButterKnife.inject(this, view);
         return view;
     }
@@ -87,25 +125,48 @@ public class OrgUnitDialogFragment extends DialogFragment implements LoaderCallb
         mAdapter = new SimpleAdapter<>(getActivity());
         mAdapter.setStringExtractor(new StringExtractor());
         mListView.setAdapter(mAdapter);
+        updateBreadcrumbs();
     }
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
-        getLoaderManager().initLoader(LOADER_ID, getArguments(), this);
+        getLoaderManager().initLoader(LOADER_ID, buildArgs(getParentId()), this);
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        ArrayList<String> ids = new ArrayList<>();
+        ArrayList<String> labels = new ArrayList<>();
+        for (UnitNode node : mPath) {
+            ids.add(node.mId);
+            labels.add(node.mLabel);
+        }
+        outState.putStringArrayList(STATE_PATH_IDS, ids);
+        outState.putStringArrayList(STATE_PATH_LABELS, labels);
     }
 
     @OnItemClick(R.id.simple_listview)
     public void onItemClick(int position) {
-        if (mListener != null) {
-            OrganisationUnit unit = mAdapter.getItemSafely(position);
-            if (unit != null) {
-                mListener.onUnitSelected(
-                        unit.getId(), unit.getDisplayName()
-                );
-            }
+        UnitNode node = mAdapter.getItemSafely(position);
+        if (node == null) {
+            return;
+        }
+
+        if (node.mHasChildren) {
+            mPath.add(node);
+            showChildren();
+        } else {
+            selectUnit(node);
+        }
+    }
+
+    @OnClick(R.id.select_unit)
+    public void onSelectClick() {
+        if (!mPath.isEmpty()) {
+            selectUnit(mPath.get(mPath.size() - 1));
         }
-        dismiss();
     }
 
     public void setOnClickListener(OnOrgUnitSetListener listener) {
@@ -117,43 +178,152 @@ public class OrgUnitDialogFragment extends DialogFragment implements LoaderCallb
     }
 
     @Override
-    public Loader<List<OrganisationUnit>> onCreateLoader(int id, Bundle args) {
+    public Loader<PagedList<UnitNode>> onCreateLoader(int id, Bundle args) {
         if (LOADER_ID == id) {
-            return CursorLoaderBuilder.forUri(OrganisationUnits.CONTENT_URI)
-                    .projection(OrganisationUnitHandler.PROJECTION)
-                    .transformation(new OrgUnitTransform())
+            String parentId = args != null ? args.getString(ARG_PARENT_ID) : null;
+            // both queries are served by indexes of organisation unit table
+            CursorLoaderBuilder builder;
+            if (parentId == null) {
+                builder = CursorLoaderBuilder.forUri(OrganisationUnits.CONTENT_URI)
+                        .selection(OrganisationUnits.ASSIGNED + " = 1");
+            } else {
+                Uri uri = OrganisationUnits.buildUriWithChildren(parentId);
+                builder = CursorLoaderBuilder.forUri(uri);
+            }
+            return builder.projection(OrganisationUnitHandler.TREE_PROJECTION)
+                    .paging(OrganisationUnits.DISPLAY_NAME, OrganisationUnits.ID,
+                            new UnitNodeMapper())
                     .build(getActivity());
         }
         return null;
     }
 
     @Override
-    public void onLoadFinished(Loader<List<OrganisationUnit>> loader,
-                               List<OrganisationUnit> data) {
+    public void onLoadFinished(Loader<PagedList<UnitNode>> loader, PagedList<UnitNode> data) {
+        if (loader == null || loader.getId() != LOADER_ID) {
+            return;
+        }
+
+        // loader is restarted on every step, so data belongs to the shown unit
         mAdapter.swapData(data);
     }
 
     @Override
-    public void onLoaderReset(Loader<List<OrganisationUnit>> loader) {
+    public void onLoaderReset(Loader<PagedList<UnitNode>> loader) {
+        // closed list does not load its pages anymore
+        mAdapter.swapData(null);
+    }
+
+    private void showChildren() {
+        updateBreadcrumbs();
+
+        // loader keeps watching for changes made by synchronization
+        mAdapter.swapData(null);
+        mListView.setSelection(0);
+        getLoaderManager().restartLoader(LOADER_ID, buildArgs(getParentId()), this);
+    }
+
+    private void showLevel(int depth) {
+        if (depth == mPath.size()) {
+            return;
+        }
+
+        while (mPath.size() > depth) {
+            mPath.remove(mPath.size() - 1);
+        }
+        showChildren();
+    }
+
+    private void selectUnit(UnitNode node) {
+        if (mListener != null) {
+            mListener.onUnitSelected(node.mId, node.mLabel);
+        }
+        dismiss();
+    }
+
+    private void updateBreadcrumbs() {
+        mBreadcrumbs.removeAllViews();
+        addBreadcrumb(getString(R.string.all_organisation_units), 0);
+        for (int i = 0; i < mPath.size(); i++) {
+            addBreadcrumb(BREADCRUMB_SEPARATOR, -1);
+            addBreadcrumb(mPath.get(i).mLabel, i + 1);
+        }
+
+        if (mPath.isEmpty()) {
+            mSelectButton.setVisibility(View.GONE);
+        } else {
+            mSelectButton.setVisibility(View.VISIBLE);
+            mSelectButton.setText(getString(R.string.select_organisation_unit,
+                    mPath.get(mPath.size() - 1).mLabel));
+        }
+
+        mBreadcrumbsScroll.post(new Runnable() {
+
+            @Override
+            public void run() {
+                mBreadcrumbsScroll.fullScroll(View.FOCUS_RIGHT);
+            }
+        });
+    }
+
+    // depth of -1 marks separator, which is not clickable
+    private void addBreadcrumb(String text, final int depth) {
+        TextView crumb = new TextView(getActivity());
+        crumb.setText(text);
+        if (depth >= 0 && depth < mPath.size()) {
+            crumb.setOnClickListener(new View.OnClickListener() {
+
+                @Override
+                public void onClick(View view) {
+                    showLevel(depth);
+                }
+            });
+        }
+        mBreadcrumbs.addView(crumb);
+    }
+
+    private String getParentId() {
+        return mPath.isEmpty() ? null : mPath.get(mPath.size() - 1).mId;
+    }
+
+    private static Bundle buildArgs(String parentId) {
+        Bundle args = new Bundle();
+        args.putString(ARG_PARENT_ID, parentId);
+        return args;
     }
 
     public interface OnOrgUnitSetListener {
         public void onUnitSelected(String orgUnitId, String orgUnitLabel);
     }
 
-    static class OrgUnitTransform implements Transformation<List<OrganisationUnit>> {
+    static class UnitNode {
+        final String mId;
+        final String mLabel;
+        final boolean mHasChildren;
+
+        UnitNode(String id, String label, boolean hasChildren) {
+            mId = id;
+            mLabel = label;
+            mHasChildren = hasChildren;
+        }
+    }
+
+    static class UnitNodeMapper implements RowMapper<UnitNode> {
 
+        // nodes are kept in path, so they are never recycled
         @Override
-        public List<OrganisationUnit> transform(Context context, Cursor cursor) {
-            return OrganisationUnitHandler.map(cursor, false);
+        public UnitNode map(Cursor cursor, UnitNode recycled) {
+            OrganisationUnit unit = OrganisationUnitHandler.fromCursor(cursor, null);
+            return new UnitNode(unit.getId(), unit.getDisplayName(),
+                    OrganisationUnitHandler.hasChildren(cursor));
         }
     }
 
-    static class StringExtractor implements SimpleAdapter.ExtractStringCallback<OrganisationUnit> {
+    static class StringExtractor implements SimpleAdapter.ExtractStringCallback<UnitNode> {
 
         @Override
-        public String getString(OrganisationUnit object) {
-            return object.getDisplayName();
+        public String getString(UnitNode object) {
+            return object.mHasChildren ? object.mLabel + HAS_CHILDREN_MARK : object.mLabel;
         }
     }
-}
\ No newline at end of file
+}
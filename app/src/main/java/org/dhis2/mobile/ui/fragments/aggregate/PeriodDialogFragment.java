@@ -43,9 +43,12 @@ import android.widget.AdapterView;
 import android.widget.Button;
 import android.widget.ListView;
 
+import org.dhis2.mobile.DhisApplication;
 import org.dhis2.mobile.R;
 import org.dhis2.mobile.api.date.CustomDateIterator;
 import org.dhis2.mobile.api.date.DateIteratorFactory;
+import org.dhis2.mobile.api.date.PeriodAvailability;
+import org.dhis2.mobile.api.date.PeriodAvailabilityCache;
 import org.dhis2.mobile.api.models.DateHolder;
 import org.dhis2.mobile.sdk.entities.DataSet;
 import org.dhis2.mobile.sdk.persistence.database.DbContract.DataSets;
@@ -121,6 +124,7 @@ public class PeriodDialogFragment extends DialogFragment
             case R.id.previous: {
                 mNext.setEnabled(true);
                 mAdapter.swapData(mIterator.previous());
+                mPrevious.setEnabled(mIterator.hasPrevious());
                 break;
             }
             case R.id.next: {
@@ -129,6 +133,7 @@ public class PeriodDialogFragment extends DialogFragment
                     if (!mIterator.hasNext()) {
                         mNext.setEnabled(false);
                     }
+                    mPrevious.setEnabled(true);
                     mAdapter.swapData(dates);
                 } else {
                     mNext.setEnabled(false);
@@ -174,16 +179,17 @@ public class PeriodDialogFragment extends DialogFragment
     @Override
     public void onLoadFinished(Loader<DataSet> loader, DataSet dataSet) {
         if (loader != null && loader.getId() == LOADER_ID && dataSet != null) {
-            mIterator = DateIteratorFactory.getDateIterator(
-                    dataSet.getPeriodType(), dataSet.isAllowFuturePeriods()
-            );
+            // data set is reloaded after metadata sync,
+            // cached availability is rebuilt if it has changed
+            long serverTime = ((DhisApplication) getActivity().getApplication())
+                    .getDhisManager().getServerClock().currentTimeMillis();
+            PeriodAvailability availability = PeriodAvailabilityCache
+                    .getInstance().get(dataSet, serverTime);
+            mIterator = DateIteratorFactory.getDateIterator(availability);
 
             mAdapter.swapData(mIterator.current());
-            if (mIterator != null && mIterator.hasNext()) {
-                mNext.setEnabled(true);
-            } else {
-                mNext.setEnabled(false);
-            }
+            mNext.setEnabled(mIterator.hasNext());
+            mPrevious.setEnabled(mIterator.hasPrevious());
         }
     }
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.utils;
+
+/**
+ * Snapshot of EventBus counters for one delivery thread. Latency is
+ * measured from post() until the subscriber is invoked.
+ */
+public final class DispatchStats {
+    private final ThreadMode mThreadMode;
+    private final long mDelivered;
+    private final long mCoalesced;
+    private final long mTotalLatency;
+    private final long mMaxLatency;
+
+    DispatchStats(ThreadMode threadMode, long delivered, long coalesced,
+                  long totalLatency, long maxLatency) {
+        mThreadMode = threadMode;
+        mDelivered = delivered;
+        mCoalesced = coalesced;
+        mTotalLatency = totalLatency;
+        mMaxLatency = maxLatency;
+    }
+
+    public ThreadMode getThreadMode() {
+        return mThreadMode;
+    }
+
+    public long getDelivered() {
+        return mDelivered;
+    }
+
+    /**
+     * Number of events which were replaced by a newer one before delivery.
+     */
+    public long getCoalesced() {
+        return mCoalesced;
+    }
+
+    /**
+     * @return average latency in milliseconds.
+     */
+    public long getAverageLatency() {
+        return mDelivered > 0 ? mTotalLatency / mDelivered : 0;
+    }
+
+    /**
+     * @return maximum latency in milliseconds.
+     */
+    public long getMaxLatency() {
+        return mMaxLatency;
+    }
+
+    @Override
+    public String toString() {
+        return mThreadMode + "[delivered=" + mDelivered + ", coalesced=" + mCoalesced +
+                ", avgLatency=" + getAverageLatency() + "ms, maxLatency=" + mMaxLatency + "ms]";
+    }
+}
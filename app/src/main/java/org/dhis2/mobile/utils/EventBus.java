@@ -28,38 +28,384 @@
 
 package org.dhis2.mobile.utils;
 
-import com.squareup.otto.Bus;
-import com.squareup.otto.ThreadEnforcer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 
+import com.squareup.otto.Subscribe;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Dispatches events to public methods annotated with Otto's @Subscribe.
+ * Otto invokes all subscribers on the posting thread, so dispatching is
+ * done here: events can be posted from any thread and each subscriber
+ * selects its thread with @DeliverOn (main thread by default).
+ *
+ * Events posted with postCoalesced() replace the previous event of
+ * the same class which is still waiting for delivery to a subscriber.
+ * The last event posted with postSticky() is kept and delivered to
+ * subscribers as soon as they register.
+ */
 public class EventBus {
-    private static EventBus mEventBus;
-    private Bus mBus;
+    private final Handler mMainHandler;
+    private final Executor mBackgroundExecutor;
+
+    // subscribers by the type of event they accept
+    private final ConcurrentMap<Class<?>, Set<Subscriber>> mSubscribers;
+    // guarded by itself
+    private final Map<Object, List<Subscriber>> mTargets;
+    private final ConcurrentMap<Class<?>, List<Method>> mMethods;
+    private final ConcurrentMap<Class<?>, Set<Class<?>>> mHierarchies;
+    private final ConcurrentMap<Class<?>, Object> mStickyEvents;
+    private final Map<ThreadMode, Counters> mCounters;
 
     private EventBus() {
-        mBus = new Bus(ThreadEnforcer.MAIN);
-    }
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mBackgroundExecutor = Executors.newSingleThreadExecutor(new BackgroundThreadFactory());
 
-    private static EventBus getInstance() {
-        if (mEventBus == null) {
-            mEventBus = new EventBus();
+        mSubscribers = new ConcurrentHashMap<>();
+        mTargets = new IdentityHashMap<>();
+        mMethods = new ConcurrentHashMap<>();
+        mHierarchies = new ConcurrentHashMap<>();
+        mStickyEvents = new ConcurrentHashMap<>();
+        mCounters = new EnumMap<>(ThreadMode.class);
+        for (ThreadMode threadMode : ThreadMode.values()) {
+            mCounters.put(threadMode, new Counters());
         }
+    }
 
-        return mEventBus;
+    private static EventBus getInstance() {
+        return InstanceHolder.INSTANCE;
     }
 
     public static <T> void post(T event) {
-        getInstance().getBus().post(event);
+        getInstance().dispatch(isNull(event, "Event must not be null"), false);
+    }
+
+    /**
+     * For high frequency events like progress updates: subscriber which
+     * has not received previous event of the same class yet gets this
+     * one instead. Events delivered synchronously are never coalesced.
+     */
+    public static <T> void postCoalesced(T event) {
+        getInstance().dispatch(isNull(event, "Event must not be null"), true);
+    }
+
+    /**
+     * Event is kept as the last value of its class and delivered to every
+     * subscriber which registers later. A subscriber registering while the
+     * event is being posted might receive it twice.
+     */
+    public static <T> void postSticky(T event) {
+        isNull(event, "Event must not be null");
+        EventBus eventBus = getInstance();
+        eventBus.mStickyEvents.put(event.getClass(), event);
+        eventBus.dispatch(event, false);
+    }
+
+    public static <T> T getStickyEvent(Class<T> eventType) {
+        return eventType.cast(getInstance().mStickyEvents.get(eventType));
+    }
+
+    public static <T> T removeStickyEvent(Class<T> eventType) {
+        return eventType.cast(getInstance().mStickyEvents.remove(eventType));
     }
 
     public static void register(Object object) {
-        getInstance().getBus().register(object);
+        getInstance().registerTarget(isNull(object, "Object must not be null"));
     }
 
     public static void unregister(Object object) {
-        getInstance().getBus().unregister(object);
+        getInstance().unregisterTarget(isNull(object, "Object must not be null"));
+    }
+
+    public static DispatchStats getStats(ThreadMode threadMode) {
+        isNull(threadMode, "ThreadMode must not be null");
+        return getInstance().mCounters.get(threadMode).getStats(threadMode);
+    }
+
+    private void registerTarget(Object target) {
+        List<Subscriber> subscribers = new ArrayList<>();
+        synchronized (mTargets) {
+            if (mTargets.containsKey(target)) {
+                return;
+            }
+
+            for (Method method : getSubscriberMethods(target.getClass())) {
+                Subscriber subscriber = new Subscriber(target, method);
+                Set<Subscriber> set = mSubscribers.get(subscriber.mEventType);
+                if (set == null) {
+                    Set<Subscriber> newSet = new CopyOnWriteArraySet<>();
+                    set = mSubscribers.putIfAbsent(subscriber.mEventType, newSet);
+                    if (set == null) {
+                        set = newSet;
+                    }
+                }
+                set.add(subscriber);
+                subscribers.add(subscriber);
+            }
+            mTargets.put(target, subscribers);
+        }
+
+        long postTime = SystemClock.elapsedRealtime();
+        for (Object stickyEvent : mStickyEvents.values()) {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.mEventType.isInstance(stickyEvent)) {
+                    deliver(subscriber, stickyEvent, postTime, false);
+                }
+            }
+        }
+    }
+
+    private void unregisterTarget(Object target) {
+        List<Subscriber> subscribers;
+        synchronized (mTargets) {
+            subscribers = mTargets.remove(target);
+        }
+
+        if (subscribers == null) {
+            return;
+        }
+
+        for (Subscriber subscriber : subscribers) {
+            // events which are already on their way are dropped
+            subscriber.mValid = false;
+            Set<Subscriber> set = mSubscribers.get(subscriber.mEventType);
+            if (set != null) {
+                set.remove(subscriber);
+            }
+        }
+    }
+
+    private void dispatch(Object event, boolean coalesce) {
+        long postTime = SystemClock.elapsedRealtime();
+        for (Class<?> eventType : getHierarchy(event.getClass())) {
+            Set<Subscriber> subscribers = mSubscribers.get(eventType);
+            if (subscribers == null) {
+                continue;
+            }
+
+            for (Subscriber subscriber : subscribers) {
+                deliver(subscriber, event, postTime, coalesce);
+            }
+        }
+    }
+
+    private void deliver(Subscriber subscriber, Object event,
+                         long postTime, boolean coalesce) {
+        ThreadMode threadMode = subscriber.mThreadMode;
+        if (threadMode == ThreadMode.POSTING || (threadMode == ThreadMode.MAIN &&
+                Looper.myLooper() == Looper.getMainLooper())) {
+            invoke(subscriber, event, postTime);
+            return;
+        }
+
+        Delivery delivery;
+        if (coalesce) {
+            synchronized (subscriber) {
+                delivery = subscriber.mPendingDeliveries.get(event.getClass());
+                if (delivery != null) {
+                    // keeps the time of first post, so latency includes waiting
+                    delivery.mEvent = event;
+                    mCounters.get(threadMode).mCoalesced.incrementAndGet();
+                    return;
+                }
+
+                delivery = new Delivery(subscriber, event, postTime, event.getClass());
+                subscriber.mPendingDeliveries.put(event.getClass(), delivery);
+            }
+        } else {
+            delivery = new Delivery(subscriber, event, postTime, null);
+        }
+
+        if (threadMode == ThreadMode.MAIN) {
+            mMainHandler.post(delivery);
+        } else {
+            mBackgroundExecutor.execute(delivery);
+        }
+    }
+
+    private void invoke(Subscriber subscriber, Object event, long postTime) {
+        if (!subscriber.mValid) {
+            return;
+        }
+
+        mCounters.get(subscriber.mThreadMode)
+                .onDelivered(SystemClock.elapsedRealtime() - postTime);
+        try {
+            subscriber.mMethod.invoke(subscriber.mTarget, event);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException("Could not dispatch event: " +
+                    event.getClass() + " to " + subscriber.mMethod, e.getCause());
+        }
+    }
+
+    private List<Method> getSubscriberMethods(Class<?> targetType) {
+        List<Method> methods = mMethods.get(targetType);
+        if (methods != null) {
+            return methods;
+        }
+
+        methods = new ArrayList<>();
+        for (Method method : targetType.getMethods()) {
+            if (method.isBridge() || !method.isAnnotationPresent(Subscribe.class)) {
+                continue;
+            }
+
+            if (method.getParameterTypes().length != 1) {
+                throw new IllegalArgumentException("Method " + method + " has @Subscribe " +
+                        "annotation but requires " + method.getParameterTypes().length +
+                        " arguments. Methods must require a single argument.");
+            }
+            methods.add(method);
+        }
+
+        methods = Collections.unmodifiableList(methods);
+        mMethods.putIfAbsent(targetType, methods);
+        return methods;
+    }
+
+    // event is delivered to subscribers of its class, superclasses and interfaces
+    private Set<Class<?>> getHierarchy(Class<?> eventType) {
+        Set<Class<?>> hierarchy = mHierarchies.get(eventType);
+        if (hierarchy != null) {
+            return hierarchy;
+        }
+
+        hierarchy = new LinkedHashSet<>();
+        addHierarchy(eventType, hierarchy);
+        hierarchy = Collections.unmodifiableSet(hierarchy);
+        mHierarchies.putIfAbsent(eventType, hierarchy);
+        return hierarchy;
+    }
+
+    private static void addHierarchy(Class<?> type, Set<Class<?>> hierarchy) {
+        if (type == null || !hierarchy.add(type)) {
+            return;
+        }
+
+        addHierarchy(type.getSuperclass(), hierarchy);
+        for (Class<?> interfaceType : type.getInterfaces()) {
+            addHierarchy(interfaceType, hierarchy);
+        }
     }
 
-    private Bus getBus() {
-        return mBus;
+    private static class InstanceHolder {
+        static final EventBus INSTANCE = new EventBus();
+    }
+
+    /**
+     * One annotated method of registered object. Becomes
+     * invalid once its object is unregistered.
+     */
+    static class Subscriber {
+        final Object mTarget;
+        final Method mMethod;
+        final Class<?> mEventType;
+        final ThreadMode mThreadMode;
+        volatile boolean mValid = true;
+        // coalesced deliveries which are not run yet; guarded by this
+        final Map<Class<?>, Delivery> mPendingDeliveries = new HashMap<>();
+
+        Subscriber(Object target, Method method) {
+            mTarget = target;
+            mMethod = method;
+            mEventType = method.getParameterTypes()[0];
+
+            DeliverOn deliverOn = method.getAnnotation(DeliverOn.class);
+            mThreadMode = deliverOn != null ? deliverOn.value() : ThreadMode.MAIN;
+        }
+    }
+
+    static class Delivery implements Runnable {
+        private final Subscriber mSubscriber;
+        private final long mPostTime;
+        private final Class<?> mCoalesceKey;
+        // guarded by subscriber
+        private Object mEvent;
+
+        Delivery(Subscriber subscriber, Object event, long postTime, Class<?> coalesceKey) {
+            mSubscriber = subscriber;
+            mEvent = event;
+            mPostTime = postTime;
+            mCoalesceKey = coalesceKey;
+        }
+
+        @Override
+        public void run() {
+            Object event;
+            synchronized (mSubscriber) {
+                if (mCoalesceKey != null) {
+                    mSubscriber.mPendingDeliveries.remove(mCoalesceKey);
+                }
+                event = mEvent;
+            }
+            getInstance().invoke(mSubscriber, event, mPostTime);
+        }
+    }
+
+    static class Counters {
+        private final AtomicLong mDelivered = new AtomicLong();
+        private final AtomicLong mCoalesced = new AtomicLong();
+        private final AtomicLong mTotalLatency = new AtomicLong();
+        private final AtomicLong mMaxLatency = new AtomicLong();
+
+        void onDelivered(long latency) {
+            mDelivered.incrementAndGet();
+            mTotalLatency.addAndGet(latency);
+            while (true) {
+                long maxLatency = mMaxLatency.get();
+                if (latency <= maxLatency ||
+                        mMaxLatency.compareAndSet(maxLatency, latency)) {
+                    break;
+                }
+            }
+        }
+
+        DispatchStats getStats(ThreadMode threadMode) {
+            return new DispatchStats(threadMode, mDelivered.get(), mCoalesced.get(),
+                    mTotalLatency.get(), mMaxLatency.get());
+        }
+    }
+
+    static class BackgroundThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "event-bus");
+        }
     }
 }
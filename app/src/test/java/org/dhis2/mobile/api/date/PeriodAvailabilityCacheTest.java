@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.date;
+
+import org.dhis2.mobile.sdk.entities.DataSet;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Monthly data set without future periods, whose periods are numbered
+ * in Ethiopian calendar, checked through PeriodAvailabilityCache.
+ */
+public class PeriodAvailabilityCacheTest {
+    private static final String DATA_SET_ID = "dataSetId";
+    private static final LocalDate TODAY = new LocalDate(2015, 6, 15);
+    private static final long NOW = TODAY.toDateTimeAtStartOfDay().getMillis();
+
+    private PeriodAvailabilityCache mCache;
+    private DataSet mDataSet;
+
+    @Before
+    public void setUp() {
+        mCache = PeriodAvailabilityCache.getInstance();
+        mCache.clear();
+
+        mDataSet = new DataSet();
+        mDataSet.setId(DATA_SET_ID);
+        mDataSet.setLastUpdated("2015-01-01T00:00:00.000+0000");
+        mDataSet.setPeriodType(PeriodType.MONTHLY.getName());
+        mDataSet.setAllowFuturePeriods(false);
+    }
+
+    @Test
+    public void testAvailabilityKeepsCalendar() {
+        PeriodAvailability availability = mCache.get(mDataSet, PeriodCalendar.ETHIOPIAN, NOW);
+        assertSame(PeriodCalendar.ETHIOPIAN, availability.getCalendar());
+
+        assertTrue(mCache.isOpen(DATA_SET_ID, PeriodCalendar.ETHIOPIAN,
+                previousMonth(TODAY), NOW));
+        assertFalse(mCache.isOpen(DATA_SET_ID, PeriodCalendar.ETHIOPIAN,
+                currentMonth(TODAY), NOW));
+    }
+
+    @Test
+    public void testAvailabilityRebuiltOnLaterDayKeepsCalendar() {
+        mCache.get(mDataSet, PeriodCalendar.ETHIOPIAN, NOW);
+
+        // a month later, the current month has ended
+        LocalDate later = TODAY.plusDays(31);
+        long laterMillis = later.toDateTimeAtStartOfDay().getMillis();
+        assertTrue(mCache.isOpen(DATA_SET_ID, PeriodCalendar.ETHIOPIAN,
+                previousMonth(later), laterMillis));
+        assertFalse(mCache.isOpen(DATA_SET_ID, PeriodCalendar.ETHIOPIAN,
+                currentMonth(later), laterMillis));
+        assertSame(PeriodCalendar.ETHIOPIAN,
+                mCache.get(mDataSet, PeriodCalendar.ETHIOPIAN, laterMillis).getCalendar());
+    }
+
+    @Test
+    public void testCalendarsDoNotShareEntries() {
+        PeriodAvailability iso = mCache.get(mDataSet, NOW);
+        PeriodAvailability ethiopian = mCache.get(mDataSet, PeriodCalendar.ETHIOPIAN, NOW);
+
+        assertSame(PeriodCalendar.ISO, iso.getCalendar());
+        assertSame(PeriodCalendar.ETHIOPIAN, ethiopian.getCalendar());
+        assertSame(iso, mCache.get(mDataSet, NOW));
+        assertSame(ethiopian, mCache.get(mDataSet, PeriodCalendar.ETHIOPIAN, NOW));
+    }
+
+    @Test
+    public void testInvalidateRemovesEntriesOfEachCalendar() {
+        PeriodAvailability iso = mCache.get(mDataSet, NOW);
+        PeriodAvailability ethiopian = mCache.get(mDataSet, PeriodCalendar.ETHIOPIAN, NOW);
+
+        mCache.invalidate(DATA_SET_ID);
+        assertFalse(iso == mCache.get(mDataSet, NOW));
+        assertFalse(ethiopian == mCache.get(mDataSet, PeriodCalendar.ETHIOPIAN, NOW));
+    }
+
+    private static String currentMonth(LocalDate date) {
+        return Periods.format(Periods.containing(PeriodCalendar.ETHIOPIAN,
+                PeriodType.MONTHLY, Periods.toEpochDay(date)));
+    }
+
+    private static String previousMonth(LocalDate date) {
+        return Periods.format(Periods.previous(Periods.containing(PeriodCalendar.ETHIOPIAN,
+                PeriodType.MONTHLY, Periods.toEpochDay(date))));
+    }
+}
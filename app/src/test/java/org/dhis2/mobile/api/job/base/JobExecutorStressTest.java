@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.job.base;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Enqueues thousands of jobs from several threads at once and checks
+ * that bookkeeping of JobExecutor neither loses nor duplicates any of them.
+ */
+public class JobExecutorStressTest {
+    private static final int THREADS = 8;
+    private static final int JOBS_PER_THREAD = 500;
+    private static final int JOBS = THREADS * JOBS_PER_THREAD;
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private static final int FIRST_UNIQUE_ID = 1000000;
+    private static final int FIRST_SHARED_ID = 2000000;
+    private static final int SHARED_IDS = 16;
+
+    private TestMainThread mMainThread;
+    private JobExecutor mExecutor;
+
+    @Before
+    public void setUp() {
+        mMainThread = new TestMainThread();
+        mExecutor = new JobExecutor(mMainThread);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mMainThread.shutdown();
+    }
+
+    @Test
+    public void testEachUniqueJobRunsExactlyOnce() throws Exception {
+        final Counters counters = new Counters(JOBS, JOBS);
+        enqueueConcurrently(new JobSource() {
+
+            @Override
+            public Job<Integer> create(int index) {
+                return new CountingJob(FIRST_UNIQUE_ID + index, index,
+                        CoalescePolicy.DROP_DUPLICATE, counters);
+            }
+        });
+
+        counters.await();
+        for (int i = 0; i < JOBS; i++) {
+            assertEquals("runs of job " + i, 1, counters.mRuns.get(i));
+            assertEquals("results of job " + i, 1, counters.mResults.get(i));
+        }
+        assertEquals(0, counters.mCancels.get());
+        assertNull(counters.mOverlap.get());
+    }
+
+    @Test
+    public void testJoinedJobsGetExactlyOneResult() throws Exception {
+        final Counters counters = new Counters(JOBS, SHARED_IDS);
+        enqueueConcurrently(new JobSource() {
+
+            @Override
+            public Job<Integer> create(int index) {
+                return new CountingJob(FIRST_SHARED_ID + index % SHARED_IDS, index,
+                        CoalescePolicy.JOIN_RUNNING, counters);
+            }
+        });
+
+        counters.await();
+        for (int i = 0; i < JOBS; i++) {
+            // job either ran or joined a running one, never both
+            assertTrue("runs of job " + i, counters.mRuns.get(i) <= 1);
+            assertEquals("results of job " + i, 1, counters.mResults.get(i));
+        }
+        assertEquals(0, counters.mCancels.get());
+        assertNull(counters.mOverlap.get());
+    }
+
+    private void enqueueConcurrently(final JobSource source) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int first = t * JOBS_PER_THREAD;
+            threads.add(new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    for (int i = first; i < first + JOBS_PER_THREAD; i++) {
+                        mExecutor.enqueue(source.create(i));
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private interface JobSource {
+        Job<Integer> create(int index);
+    }
+
+    private static final class Counters {
+        // indexed by job, not by job id
+        private final AtomicIntegerArray mRuns;
+        private final AtomicIntegerArray mResults;
+        // indexed by job id, jobs with the same id must not overlap
+        private final AtomicIntegerArray mRunning;
+        private final AtomicInteger mCancels;
+        private final AtomicReference<String> mOverlap;
+        private final CountDownLatch mDone;
+        private final int mIds;
+
+        Counters(int jobs, int ids) {
+            mRuns = new AtomicIntegerArray(jobs);
+            mResults = new AtomicIntegerArray(jobs);
+            mRunning = new AtomicIntegerArray(ids);
+            mCancels = new AtomicInteger();
+            mOverlap = new AtomicReference<>();
+            mDone = new CountDownLatch(jobs);
+            mIds = ids;
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("jobs did not finish in time",
+                    mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    private static final class CountingJob extends Job<Integer> {
+        private final int mIndex;
+        private final CoalescePolicy mPolicy;
+        private final Counters mCounters;
+
+        CountingJob(int jobId, int index, CoalescePolicy policy, Counters counters) {
+            super(jobId, JobType.CPU, JobPriority.NORMAL);
+            mIndex = index;
+            mPolicy = policy;
+            mCounters = counters;
+        }
+
+        @Override
+        public CoalescePolicy getCoalescePolicy() {
+            return mPolicy;
+        }
+
+        @Override
+        public Integer inBackground() {
+            int slot = getJobId() % mCounters.mIds;
+            if (mCounters.mRunning.incrementAndGet(slot) > 1) {
+                mCounters.mOverlap.compareAndSet(null, "job id " + getJobId());
+            }
+            mCounters.mRuns.incrementAndGet(mIndex);
+            mCounters.mRunning.decrementAndGet(slot);
+            return mIndex;
+        }
+
+        @Override
+        public void onFinish(Integer result) {
+            mCounters.mResults.incrementAndGet(mIndex);
+            mCounters.mDone.countDown();
+        }
+
+        @Override
+        public void onCancel() {
+            mCounters.mCancels.incrementAndGet();
+            mCounters.mResults.incrementAndGet(mIndex);
+            mCounters.mDone.countDown();
+        }
+    }
+}
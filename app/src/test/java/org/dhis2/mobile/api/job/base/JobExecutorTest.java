@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.job.base;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cancels jobs which have already claimed their slot and a pool thread,
+ * but were not handed to AsyncTask yet, since their start is still
+ * waiting in the queue of the main thread.
+ */
+public class JobExecutorTest {
+    private static final int JOB_ID = 1;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private TestMainThread mMainThread;
+    private JobExecutor mExecutor;
+    private CountDownLatch mMainThreadBlocked;
+
+    @Before
+    public void setUp() {
+        mMainThread = new TestMainThread();
+        mExecutor = new JobExecutor(mMainThread);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        unblockMainThread();
+        mMainThread.shutdown();
+    }
+
+    @Test
+    public void testJobCancelledBeforeStartReleasesSlot() throws Exception {
+        RecordingJob job = new RecordingJob(JOB_ID, CoalescePolicy.DROP_DUPLICATE);
+
+        blockMainThread();
+        mExecutor.enqueue(job);
+        mExecutor.cancelAll();
+        unblockMainThread();
+
+        assertTrue(job.mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitMainThread();
+        assertEquals(0, job.mRuns.get());
+        assertEquals(1, job.mCancels.get());
+        assertEquals(0, job.mFinishes.get());
+        assertFalse(mExecutor.isJobEnqueued(JOB_ID));
+        assertEquals(0, mExecutor.getPoolStats(JobType.CPU).getRunningJobs());
+    }
+
+    @Test
+    public void testJobCancelledBeforeStartStartsNextJob() throws Exception {
+        RecordingJob job = new RecordingJob(JOB_ID, CoalescePolicy.DROP_DUPLICATE);
+        RecordingJob nextJob = new RecordingJob(JOB_ID, CoalescePolicy.REPLACE_PENDING);
+
+        blockMainThread();
+        mExecutor.enqueue(job);
+        mExecutor.cancelAll();
+        // first job still holds the slot, so this one has to wait for it
+        mExecutor.enqueue(nextJob);
+        unblockMainThread();
+
+        assertTrue(nextJob.mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitMainThread();
+        assertEquals(1, job.mCancels.get());
+        assertEquals(0, job.mRuns.get());
+        assertEquals(1, nextJob.mRuns.get());
+        assertEquals(1, nextJob.mFinishes.get());
+        assertFalse(mExecutor.isJobEnqueued(JOB_ID));
+        assertEquals(0, mExecutor.getPoolStats(JobType.CPU).getRunningJobs());
+    }
+
+    @Test
+    public void testPoolIsUsableAfterJobCancelledBeforeStart() throws Exception {
+        // more jobs than the pool has threads, all of them are cancelled
+        blockMainThread();
+        for (int i = 0; i < 64; i++) {
+            mExecutor.enqueue(new RecordingJob(JOB_ID + i, CoalescePolicy.DROP_DUPLICATE));
+        }
+        mExecutor.cancelAll();
+        unblockMainThread();
+        awaitMainThread();
+
+        RecordingJob job = new RecordingJob(JOB_ID, CoalescePolicy.DROP_DUPLICATE);
+        mExecutor.enqueue(job);
+        assertTrue(job.mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, job.mFinishes.get());
+    }
+
+    /* Keeps posted starts of jobs in the queue until unblockMainThread() */
+    private void blockMainThread() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        mMainThreadBlocked = new CountDownLatch(1);
+        final CountDownLatch released = mMainThreadBlocked;
+        mMainThread.post(new Runnable() {
+
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(blocked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private void unblockMainThread() {
+        if (mMainThreadBlocked != null) {
+            mMainThreadBlocked.countDown();
+        }
+    }
+
+    /* Waits for everything posted to the main thread so far */
+    private void awaitMainThread() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mMainThread.post(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private static final class RecordingJob extends Job<Object> {
+        private final CoalescePolicy mPolicy;
+        private final AtomicInteger mRuns = new AtomicInteger();
+        private final AtomicInteger mFinishes = new AtomicInteger();
+        private final AtomicInteger mCancels = new AtomicInteger();
+        private final CountDownLatch mDone = new CountDownLatch(1);
+
+        RecordingJob(int jobId, CoalescePolicy policy) {
+            super(jobId, JobType.CPU, JobPriority.NORMAL);
+            mPolicy = policy;
+        }
+
+        @Override
+        public CoalescePolicy getCoalescePolicy() {
+            return mPolicy;
+        }
+
+        @Override
+        public Object inBackground() {
+            mRuns.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void onFinish(Object result) {
+            mFinishes.incrementAndGet();
+            mDone.countDown();
+        }
+
+        @Override
+        public void onCancel() {
+            mCancels.incrementAndGet();
+            mDone.countDown();
+        }
+    }
+}
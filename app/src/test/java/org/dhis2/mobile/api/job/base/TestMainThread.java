@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.api.job.base;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands for the main thread of the app in JVM unit tests, where android.jar
+ * is stubbed out: posted runnables are run one by one on a single thread
+ * and jobs are executed the way AsyncTask does it.
+ */
+final class TestMainThread implements JobExecutor.MainThread {
+    private final ExecutorService mExecutor;
+    private volatile Thread mThread;
+
+    TestMainThread() {
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                mThread = new Thread(runnable, "main");
+                return mThread;
+            }
+        });
+    }
+
+    @Override
+    public boolean isCurrentThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    @Override
+    public void post(Runnable runnable) {
+        mExecutor.execute(runnable);
+    }
+
+    @Override
+    public void postAtTime(Runnable runnable, long uptimeMillis) {
+        // SystemClock is stubbed out, so there is no time to wait for
+        post(runnable);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable runnable) {
+        // release of batch window does nothing if it is empty
+    }
+
+    @Override
+    public <T> void execute(final Job<T> job, Executor executor) {
+        job.onPreExecute();
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                final T result = job.doInBackground();
+                post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (job.isJobCancelled()) {
+                            job.onCancelled(result);
+                        } else {
+                            job.onPostExecute(result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    void shutdown() throws InterruptedException {
+        mExecutor.shutdown();
+        mExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
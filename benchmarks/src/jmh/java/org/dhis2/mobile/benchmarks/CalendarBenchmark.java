@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.benchmarks;
+
+import org.dhis2.mobile.api.date.PeriodAvailability;
+import org.dhis2.mobile.api.date.PeriodCalendar;
+import org.dhis2.mobile.api.date.PeriodSource;
+import org.dhis2.mobile.api.date.PeriodType;
+import org.dhis2.mobile.api.date.Periods;
+import org.joda.time.Chronology;
+import org.joda.time.LocalDate;
+import org.joda.time.chrono.EthiopicChronology;
+import org.joda.time.chrono.ISOChronology;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Table driven calendars against the arithmetic ISO one, with
+ * conversion through Joda chronology as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CalendarBenchmark {
+    private static final int DAYS = 366;
+
+    @Param({"iso8601", "ethiopian"})
+    public String calendar;
+
+    @Param({"DAILY", "WEEKLY", "MONTHLY", "QUARTERLY"})
+    public PeriodType periodType;
+
+    private PeriodCalendar mCalendar;
+    private Chronology mChronology;
+    private int mToday;
+    private long mPeriod;
+    private String mId;
+    private PeriodSource mSource;
+
+    @Setup
+    public void setUp() {
+        mCalendar = PeriodCalendar.fromName(calendar);
+        mChronology = PeriodCalendar.ISO == mCalendar ?
+                ISOChronology.getInstanceUTC() : EthiopicChronology.getInstanceUTC();
+        mToday = Periods.toEpochDay(new LocalDate());
+        mPeriod = Periods.containing(mCalendar, periodType, mToday);
+        mId = Periods.format(mPeriod);
+        mSource = new PeriodSource(new PeriodAvailability(mCalendar, periodType, true, 0, mToday));
+    }
+
+    @Benchmark
+    public int toYmd() {
+        int sum = 0;
+        for (int day = mToday - DAYS; day < mToday; day++) {
+            sum += mCalendar.toYmd(day);
+        }
+        return sum;
+    }
+
+    // what a per period conversion through chronology costs
+    @Benchmark
+    public int toYmdJoda() {
+        int sum = 0;
+        for (int day = mToday - DAYS; day < mToday; day++) {
+            LocalDate date = new LocalDate(day * 86400000L, mChronology);
+            sum += date.getYear() * 10000 + date.getMonthOfYear() * 100 + date.getDayOfMonth();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long containing() {
+        return Periods.containing(mCalendar, periodType, mToday);
+    }
+
+    @Benchmark
+    public int startEndDays() {
+        return Periods.getEndDay(mPeriod) - Periods.getStartDay(mPeriod);
+    }
+
+    @Benchmark
+    public String format() {
+        return Periods.format(mPeriod);
+    }
+
+    @Benchmark
+    public long parse() {
+        return Periods.parse(mCalendar, mId);
+    }
+
+    @Benchmark
+    public void generatePeriods(Blackhole blackhole) {
+        int size = Math.min(mSource.size(), 52);
+        for (int position = 0; position < size; position++) {
+            blackhole.consume(mSource.getDateHolder(mSource.get(position)));
+        }
+    }
+}
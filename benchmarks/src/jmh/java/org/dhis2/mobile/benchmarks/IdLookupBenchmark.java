@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of rows by id, as done by DbContentProvider. Android SQLite is
+ * not available on desktop JVM, so the same engine is driven through JDBC:
+ * "concatenated" variants compile SQL with the id inlined on every call,
+ * as the provider did before StatementCache, "cached" variants re-bind
+ * the id to a statement which was compiled once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdLookupBenchmark {
+    private static final int ROWS = 1000;
+    private static final String TABLE = "organisationUnits";
+
+    private Connection mConnection;
+    private Statement mStatement;
+    private PreparedStatement mCachedQuery;
+    private PreparedStatement mCachedUpdate;
+    private String[] mIds;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws SQLException {
+        mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        mStatement = mConnection.createStatement();
+        mStatement.executeUpdate("CREATE TABLE " + TABLE + "(" +
+                "id TEXT PRIMARY KEY, name TEXT NOT NULL, level INTEGER NOT NULL)");
+
+        mIds = new String[ROWS];
+        PreparedStatement insert = mConnection.prepareStatement(
+                "INSERT INTO " + TABLE + " VALUES (?, ?, ?)");
+        for (int i = 0; i < ROWS; i++) {
+            mIds[i] = String.format("unit%07d", i);
+            insert.setString(1, mIds[i]);
+            insert.setString(2, "Unit " + i);
+            insert.setInt(3, 1 + i % 4);
+            insert.executeUpdate();
+        }
+        insert.close();
+
+        mCachedQuery = mConnection.prepareStatement(
+                "SELECT id, name, level FROM " + TABLE + " WHERE id = ?");
+        mCachedUpdate = mConnection.prepareStatement(
+                "UPDATE " + TABLE + " SET level = ?, name = ? WHERE id = ?");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mCachedQuery.close();
+        mCachedUpdate.close();
+        mStatement.close();
+        mConnection.close();
+    }
+
+    @Benchmark
+    public String queryConcatenated() throws SQLException {
+        ResultSet resultSet = mStatement.executeQuery("SELECT id, name, level FROM " +
+                TABLE + " WHERE id = '" + nextId() + "'");
+        try {
+            return resultSet.next() ? resultSet.getString(2) : null;
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    @Benchmark
+    public String queryCached() throws SQLException {
+        mCachedQuery.setString(1, nextId());
+        ResultSet resultSet = mCachedQuery.executeQuery();
+        try {
+            return resultSet.next() ? resultSet.getString(2) : null;
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    @Benchmark
+    public int updateConcatenated() throws SQLException {
+        return mStatement.executeUpdate("UPDATE " + TABLE +
+                " SET level = 2, name = 'Unit' WHERE id = '" + nextId() + "'");
+    }
+
+    @Benchmark
+    public int updateCached() throws SQLException {
+        mCachedUpdate.setInt(1, 2);
+        mCachedUpdate.setString(2, "Unit");
+        mCachedUpdate.setString(3, nextId());
+        return mCachedUpdate.executeUpdate();
+    }
+
+    private String nextId() {
+        mNext = (mNext + 1) % ROWS;
+        return mIds[mNext];
+    }
+}
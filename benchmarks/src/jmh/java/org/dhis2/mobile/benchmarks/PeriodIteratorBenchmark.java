@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.benchmarks;
+
+import org.dhis2.mobile.api.date.CustomDateIterator;
+import org.dhis2.mobile.api.date.DateIteratorFactory;
+import org.dhis2.mobile.api.date.PeriodSource;
+import org.dhis2.mobile.api.models.DateHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Period lists as PeriodDialogFragment sees them: opening the
+ * dialog, flipping pages and building a year of periods from scratch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PeriodIteratorBenchmark {
+
+    @Param({"Daily", "Weekly", "Monthly", "BiMonthly", "Quarterly", "SixMonthly",
+            "Yearly", "FinancialApril", "FinancialJuly", "FinancialOct"})
+    public String periodType;
+
+    @Param({"false", "true"})
+    public boolean allowFuturePeriods;
+
+    private CustomDateIterator<List<DateHolder>> mIterator;
+    private PeriodSource mSource;
+    private int mPeriodsPerYear;
+
+    @Setup
+    public void setUp() {
+        mIterator = DateIteratorFactory.getDateIterator(periodType, allowFuturePeriods);
+        mIterator.current();
+        mSource = DateIteratorFactory.getPeriodSource(periodType, allowFuturePeriods);
+        mPeriodsPerYear = Math.min(mSource.size(), mIterator.previous().size());
+    }
+
+    @Benchmark
+    public List<DateHolder> current() {
+        return DateIteratorFactory.getDateIterator(periodType, allowFuturePeriods).current();
+    }
+
+    @Benchmark
+    public void previousNext(Blackhole blackhole) {
+        blackhole.consume(mIterator.previous());
+        blackhole.consume(mIterator.next());
+    }
+
+    // bypasses page cache: every holder is formatted and labelled again
+    @Benchmark
+    public void generatePeriods(Blackhole blackhole) {
+        for (int position = 0; position < mPeriodsPerYear; position++) {
+            blackhole.consume(mSource.getDateHolder(mSource.get(position)));
+        }
+    }
+}
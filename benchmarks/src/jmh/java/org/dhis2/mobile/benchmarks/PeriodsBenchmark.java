@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.benchmarks;
+
+import org.dhis2.mobile.api.date.PeriodType;
+import org.dhis2.mobile.api.date.Periods;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Arithmetic of encoded periods, which is expected not to allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PeriodsBenchmark {
+
+    @Param({"DAILY", "WEEKLY", "MONTHLY", "QUARTERLY", "FINANCIAL_APRIL"})
+    public PeriodType periodType;
+
+    private int mToday;
+    private long mPeriod;
+    private String mId;
+
+    @Setup
+    public void setUp() {
+        mToday = Periods.toEpochDay(new LocalDate());
+        mPeriod = Periods.containing(periodType, mToday);
+        mId = Periods.format(mPeriod);
+    }
+
+    @Benchmark
+    public long containing() {
+        return Periods.containing(periodType, mToday);
+    }
+
+    @Benchmark
+    public long nextPrevious() {
+        return Periods.previous(Periods.next(mPeriod));
+    }
+
+    @Benchmark
+    public int startEndDays() {
+        return Periods.getEndDay(mPeriod) - Periods.getStartDay(mPeriod);
+    }
+
+    @Benchmark
+    public String format() {
+        return Periods.format(mPeriod);
+    }
+
+    @Benchmark
+    public long parse() {
+        return Periods.parse(mId);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.network;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs requests the way HttpManager does it: each of them registers
+ * its own listener on the shared token and removes it once it is over.
+ */
+public class CancellationTokenTest extends TestCase {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private CancellationToken mToken;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mToken = new CancellationToken();
+    }
+
+    public void testFinishedRequestDoesNotUnregisterConcurrentOne() throws Exception {
+        final CountDownLatch registered = new CountDownLatch(2);
+        final CountDownLatch firstFinished = new CountDownLatch(1);
+        final CountDownLatch secondCancelled = new CountDownLatch(1);
+
+        Thread first = new Thread(new FakeRequest(registered, firstFinished, null));
+        Thread second = new Thread(new FakeRequest(registered, null, secondCancelled));
+        first.start();
+        second.start();
+
+        assertTrue(registered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(firstFinished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        first.join();
+
+        mToken.cancel();
+        assertTrue(secondCancelled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        second.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        assertFalse(second.isAlive());
+    }
+
+    public void testCancelNotifiesEveryListenerOnce() {
+        CountingListener first = new CountingListener();
+        CountingListener second = new CountingListener();
+        mToken.addOnCancelListener(first);
+        mToken.addOnCancelListener(second);
+
+        mToken.cancel();
+        mToken.cancel();
+        assertEquals(1, first.mCalls.get());
+        assertEquals(1, second.mCalls.get());
+    }
+
+    public void testRemovedListenerIsNotNotified() {
+        CountingListener removed = new CountingListener();
+        CountingListener kept = new CountingListener();
+        CancellationToken.Registration registration = mToken.addOnCancelListener(removed);
+        mToken.addOnCancelListener(kept);
+
+        mToken.removeOnCancelListener(registration);
+        mToken.cancel();
+        assertEquals(0, removed.mCalls.get());
+        assertEquals(1, kept.mCalls.get());
+    }
+
+    public void testListenerAddedAfterCancelIsCalledImmediately() {
+        CountingListener listener = new CountingListener();
+        mToken.cancel();
+
+        mToken.addOnCancelListener(listener);
+        assertEquals(1, listener.mCalls.get());
+    }
+
+    /* Stands for HttpManager.request(): it blocks until cancelled, unless finished is given */
+    private class FakeRequest implements Runnable {
+        private final CountDownLatch mRegistered;
+        private final CountDownLatch mFinished;
+        private final CountDownLatch mCancelled;
+
+        FakeRequest(CountDownLatch registered, CountDownLatch finished, CountDownLatch cancelled) {
+            mRegistered = registered;
+            mFinished = finished;
+            mCancelled = cancelled;
+        }
+
+        @Override
+        public void run() {
+            final CountDownLatch call = new CountDownLatch(1);
+            CancellationToken.Registration registration = mToken.addOnCancelListener(
+                    new CancellationToken.OnCancelListener() {
+
+                        @Override
+                        public void onCancel() {
+                            call.countDown();
+                        }
+                    });
+
+            try {
+                mRegistered.countDown();
+                if (mFinished != null) {
+                    // both requests have to be in flight
+                    // before the first one is over
+                    mRegistered.await();
+                    mFinished.countDown();
+                } else if (call.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    mCancelled.countDown();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                mToken.removeOnCancelListener(registration);
+            }
+        }
+    }
+
+    private static class CountingListener implements CancellationToken.OnCancelListener {
+        private final AtomicInteger mCalls = new AtomicInteger();
+
+        @Override
+        public void onCancel() {
+            mCalls.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.persistence.loaders;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks which subscribers of one SharedQuery share transformed results.
+ */
+public class SharedQueryTest extends AndroidTestCase {
+    // no provider is registered for it, so queries return null cursor
+    private static final Uri URI = Uri.parse("content://org.dhis2.mobile.sdk.test/items");
+
+    private SharedQueryRegistry mRegistry;
+    private Handler mHandler;
+    private CountDownLatch mLatch;
+    private RecordingSubscriber mFirstSubscriber;
+    private RecordingSubscriber mSecondSubscriber;
+    private SharedQuery mQuery;
+    private long mThrottle;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRegistry = SharedQueryRegistry.getInstance(getContext());
+        mThrottle = mRegistry.getThrottle();
+        mHandler = new Handler(Looper.getMainLooper());
+        mLatch = new CountDownLatch(2);
+        mFirstSubscriber = new RecordingSubscriber();
+        mSecondSubscriber = new RecordingSubscriber();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mQuery != null) {
+                    mQuery.unsubscribe(mFirstSubscriber);
+                    mQuery.unsubscribe(mSecondSubscriber);
+                }
+            }
+        });
+        mRegistry.setThrottle(mThrottle);
+        super.tearDown();
+    }
+
+    public void testDifferentlyConfiguredInstancesDoNotShareResults() throws Exception {
+        // second transformation is applied by the reload which follows the first load
+        mRegistry.setThrottle(0);
+        subscribe(new ValueTransformation("first"), new ValueTransformation("second"));
+
+        assertEquals("first", mFirstSubscriber.mResult);
+        assertEquals("second", mSecondSubscriber.mResult);
+    }
+
+    public void testSameInstanceIsTransformedOnce() throws Exception {
+        // keeps the reload, requested by the second subscriber, out of the way
+        mRegistry.setThrottle(TimeUnit.MINUTES.toMillis(1));
+        ValueTransformation transformation = new ValueTransformation("value");
+        subscribe(transformation, transformation);
+
+        assertEquals("value", mFirstSubscriber.mResult);
+        assertSame(mFirstSubscriber.mResult, mSecondSubscriber.mResult);
+        assertEquals(1, transformation.mCalls.get());
+    }
+
+    public void testExistsLoadersShareTransformation() {
+        Transformation<Boolean> first = CursorLoaderBuilder.forUri(URI)
+                .exists().buildShared(getContext()).mTransformation;
+        Transformation<Boolean> second = CursorLoaderBuilder.forUri(URI)
+                .exists().buildShared(getContext()).mTransformation;
+        assertSame(first, second);
+    }
+
+    /* Subscribes both subscribers on the UI thread and waits for their results */
+    private void subscribe(final ValueTransformation first,
+                           final ValueTransformation second) throws InterruptedException {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mQuery = mRegistry.subscribe(URI, null, null, null, null,
+                        first, mFirstSubscriber);
+                mRegistry.subscribe(URI, null, null, null, null,
+                        second, mSecondSubscriber);
+            }
+        });
+        assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    private void runOnMainThread(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    private static class ValueTransformation implements Transformation<String> {
+        private final String mValue;
+        private final AtomicInteger mCalls = new AtomicInteger();
+
+        ValueTransformation(String value) {
+            mValue = value;
+        }
+
+        @Override
+        public String transform(Context context, Cursor cursor) {
+            mCalls.incrementAndGet();
+            // new object on each call, so sharing can be told apart
+            return new String(mValue);
+        }
+    }
+
+    private class RecordingSubscriber implements SharedQuery.Subscriber<String> {
+        private volatile String mResult;
+
+        @Override
+        public void onResult(SharedQuery.Snapshot snapshot, String result) {
+            if (mResult == null) {
+                mLatch.countDown();
+            }
+            mResult = result;
+        }
+    }
+}
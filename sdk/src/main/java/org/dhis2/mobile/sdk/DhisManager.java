@@ -38,30 +38,59 @@ import org.dhis2.mobile.sdk.controllers.LogOutUserController;
 import org.dhis2.mobile.sdk.controllers.MetaDataController;
 import org.dhis2.mobile.sdk.entities.UserAccount;
 import org.dhis2.mobile.sdk.network.APIException;
+import org.dhis2.mobile.sdk.network.CancellationToken;
 import org.dhis2.mobile.sdk.network.http.Response;
 import org.dhis2.mobile.sdk.network.managers.NetworkManager;
 import org.dhis2.mobile.sdk.network.models.Credentials;
 import org.dhis2.mobile.sdk.persistence.handlers.CategoryComboHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.DataSetHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.OrganisationUnitHandler;
+import org.dhis2.mobile.sdk.persistence.handlers.RecentUnitsHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.SessionHandler;
+import org.dhis2.mobile.sdk.persistence.handlers.SyncCheckpointHandler;
+import org.dhis2.mobile.sdk.persistence.handlers.SyncScopeHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.UnitDataSetHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.UserAccountHandler;
 import org.dhis2.mobile.sdk.persistence.models.Session;
+import org.dhis2.mobile.sdk.persistence.models.SyncScope;
 
 import java.net.HttpURLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
 
 public class DhisManager extends NetworkManager {
+    // repeated refresh requests within this time are ignored
+    public static final long DEFAULT_MIN_SYNC_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    // levels of hierarchy downloaded below units assigned to user
+    public static final int DEFAULT_ORG_UNIT_MAX_DEPTH = 3;
+    // how often callers waiting for in-flight sync check their own cancellation
+    private static final long SYNC_POLL_INTERVAL = 500;
+    private static final String SYNC_URL = "syncMetaData";
+
     private final Context mContext;
     private OrganisationUnitHandler mOrgUnitHandler;
     private DataSetHandler mDataSetHandler;
     private UnitDataSetHandler mUnitDataSetHandler;
     private CategoryComboHandler mCategoryComboHandler;
     private SessionHandler mSessionHandler;
+    private SyncCheckpointHandler mSyncCheckpointHandler;
+    private SyncScopeHandler mSyncScopeHandler;
+    private RecentUnitsHandler mRecentUnitsHandler;
     private UserAccountHandler mUserAccountHandler;
 
+    private final Object mSyncLock = new Object();
+    private FutureTask<Object> mSyncTask;
+    private long mLastSyncTime;
+    private long mMinSyncInterval = DEFAULT_MIN_SYNC_INTERVAL;
+    private SyncScope mLastSyncScope;
+    private int mOrgUnitMaxDepth = DEFAULT_ORG_UNIT_MAX_DEPTH;
+
     public DhisManager(Context context) {
         mContext = isNull(context, "Context object must not be null");
         mOrgUnitHandler = new OrganisationUnitHandler(context);
@@ -69,6 +98,9 @@ public class DhisManager extends NetworkManager {
         mUnitDataSetHandler = new UnitDataSetHandler(context, getLogManager());
         mCategoryComboHandler = new CategoryComboHandler(context, getLogManager());
         mSessionHandler = new SessionHandler(context);
+        mSyncCheckpointHandler = new SyncCheckpointHandler(context);
+        mSyncScopeHandler = new SyncScopeHandler(context);
+        mRecentUnitsHandler = new RecentUnitsHandler(context);
         mUserAccountHandler = new UserAccountHandler(context);
         // fetch meta data from disk
         readMetaData();
@@ -87,6 +119,14 @@ public class DhisManager extends NetworkManager {
         IController<Object> controller =
                 new LogOutUserController(mSessionHandler, mUserAccountHandler);
         controller.run();
+        // progress of interrupted sync, scope and history
+        // of data entry belong to the previous user
+        mSyncCheckpointHandler.delete();
+        mSyncScopeHandler.delete();
+        mRecentUnitsHandler.delete();
+        synchronized (mSyncLock) {
+            mLastSyncTime = 0;
+        }
 
         // fetch meta data from disk
         readMetaData();
@@ -130,13 +170,151 @@ public class DhisManager extends NetworkManager {
         }
     }
 
+    /**
+     * Only one synchronization runs at a time. Callers which arrive while it
+     * is in progress wait for it and get the same result or failure. Calls made
+     * within minimum interval after last successful synchronization return
+     * immediately.
+     */
     public void syncMetaData() throws APIException {
-        IController<Object> metaDataController = new MetaDataController(
-                mContext, this, mOrgUnitHandler, mDataSetHandler,
-                mUnitDataSetHandler, mCategoryComboHandler, null, null,
-                null, null, null, mSessionHandler
-        );
-        runController(metaDataController);
+        FutureTask<Object> task;
+        SyncScope syncScope = null;
+        boolean owner = false;
+        synchronized (mSyncLock) {
+            task = mSyncTask;
+            if (task == null) {
+                long now = System.currentTimeMillis();
+                syncScope = mSyncScopeHandler.get();
+                if (mLastSyncTime > 0 && now - mLastSyncTime < mMinSyncInterval &&
+                        syncScope.equals(mLastSyncScope)) {
+                    return;
+                }
+
+                final SyncScope scope = syncScope;
+                final int orgUnitMaxDepth = mOrgUnitMaxDepth;
+                task = new FutureTask<>(new Callable<Object>() {
+
+                    @Override
+                    public Object call() throws APIException {
+                        return runController(new MetaDataController(
+                                mContext, DhisManager.this, mOrgUnitHandler, mDataSetHandler,
+                                mUnitDataSetHandler, mCategoryComboHandler, null, null,
+                                null, null, null, mSessionHandler, mSyncCheckpointHandler,
+                                scope, mRecentUnitsHandler, orgUnitMaxDepth
+                        ));
+                    }
+                });
+                mSyncTask = task;
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            // runs on the calling thread, so its cancellation token applies
+            task.run();
+            synchronized (mSyncLock) {
+                mSyncTask = null;
+                if (getQuietly(task)) {
+                    mLastSyncTime = System.currentTimeMillis();
+                    mLastSyncScope = syncScope;
+                }
+            }
+        }
+
+        try {
+            awaitSync(task);
+        } catch (APIException apiException) {
+            // sync we joined was cancelled by its owner, not by us
+            CancellationToken token = CancellationToken.current();
+            if (!owner && apiException.isCancelled() &&
+                    (token == null || !token.isCancelled())) {
+                syncMetaData();
+                return;
+            }
+            throw apiException;
+        }
+    }
+
+    /**
+     * Returns synchronization which is in progress or null.
+     */
+    public Future<Object> getMetaDataSync() {
+        synchronized (mSyncLock) {
+            return mSyncTask;
+        }
+    }
+
+    public void setMinSyncInterval(long minSyncInterval) {
+        synchronized (mSyncLock) {
+            mMinSyncInterval = minSyncInterval;
+        }
+    }
+
+    public SyncScope getSyncScope() {
+        return mSyncScopeHandler.get();
+    }
+
+    /**
+     * Changed scope is applied by the next call to syncMetaData(), even
+     * if it comes within minimum interval after the last synchronization.
+     */
+    public void setSyncScope(SyncScope syncScope) {
+        isNull(syncScope, "SyncScope object must not be null");
+        synchronized (mSyncLock) {
+            mSyncScopeHandler.put(syncScope);
+        }
+    }
+
+    /**
+     * Remembers that user started data entry for given organisation unit.
+     * Used by SyncScope.recentDataEntry(int).
+     */
+    public void onDataEntry(String orgUnitId) {
+        mRecentUnitsHandler.put(orgUnitId, System.currentTimeMillis());
+    }
+
+    /**
+     * Takes effect from the next synchronization. Units which are
+     * deeper than the new limit are removed by it.
+     */
+    public void setOrgUnitMaxDepth(int orgUnitMaxDepth) {
+        if (orgUnitMaxDepth < 0) {
+            throw new IllegalArgumentException("Maximum depth must not be negative");
+        }
+
+        synchronized (mSyncLock) {
+            mOrgUnitMaxDepth = orgUnitMaxDepth;
+        }
+    }
+
+    private static boolean getQuietly(Future<Object> task) {
+        try {
+            task.get();
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            return false;
+        }
+    }
+
+    private static void awaitSync(Future<Object> task) throws APIException {
+        while (true) {
+            // caller can give up waiting, while sync goes on for others
+            CancellationToken.throwIfCancelled(SYNC_URL);
+            try {
+                task.get(SYNC_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                // check cancellation again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw APIException.cancelledError(SYNC_URL);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof APIException) {
+                    throw (APIException) e.getCause();
+                }
+                throw APIException.unexpectedError(SYNC_URL, e.getCause());
+            }
+        }
     }
 
     // we need this method in order to catch certain types of exceptions.
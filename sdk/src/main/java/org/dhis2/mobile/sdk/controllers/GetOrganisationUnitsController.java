@@ -25,125 +25,56 @@
  * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
-
 package org.dhis2.mobile.sdk.controllers;
 
 import org.dhis2.mobile.sdk.DhisManager;
-import org.dhis2.mobile.sdk.entities.DataSet;
 import org.dhis2.mobile.sdk.entities.OrganisationUnit;
 import org.dhis2.mobile.sdk.network.APIException;
 import org.dhis2.mobile.sdk.network.tasks.GetAssignedOrganisationUnitsTask;
 import org.dhis2.mobile.sdk.network.tasks.GetOrganisationUnitsTask;
-import org.dhis2.mobile.sdk.persistence.handlers.OrganisationUnitHandler;
-import org.dhis2.mobile.sdk.persistence.handlers.UnitDataSetHandler;
 import org.dhis2.mobile.sdk.persistence.models.Session;
-import org.joda.time.DateTime;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static org.dhis2.mobile.sdk.utils.DbUtils.toIds;
-import static org.dhis2.mobile.sdk.utils.DbUtils.toMap;
 
 public final class GetOrganisationUnitsController implements IController<List<OrganisationUnit>> {
+    private static final int CHUNK_SIZE = 50;
+    private static final int PARALLELISM = 3;
+
     private final DhisManager mDhisManager;
-    private final OrganisationUnitHandler mOrgUnitHandler;
-    private final UnitDataSetHandler mUnitDataSetHandler;
     private final Session mSession;
+    private final int mMaxDepth;
 
+    /**
+     * @param maxDepth number of levels below assigned units which are downloaded.
+     */
     public GetOrganisationUnitsController(DhisManager dhisManager,
-                                          OrganisationUnitHandler orgUnitHandler,
-                                          UnitDataSetHandler unitDataSetHandler,
-                                          Session session) {
+                                          Session session, int maxDepth) {
         mDhisManager = dhisManager;
-        mOrgUnitHandler = orgUnitHandler;
-        mUnitDataSetHandler = unitDataSetHandler;
         mSession = session;
+        mMaxDepth = maxDepth;
     }
 
     @Override
     public List<OrganisationUnit> run() throws APIException {
-        Map<String, OrganisationUnit> newShortUnits = getNewBaseOrganisationUnits();
-        Map<String, OrganisationUnit> oldUnits = getOldFullOrganisationUnits();
-
-        List<String> unitsToDownload = new ArrayList<>();
-        for (String newOrgUnitKey : newShortUnits.keySet()) {
-            OrganisationUnit newOrgUnit = newShortUnits.get(newOrgUnitKey);
-            OrganisationUnit oldOrgUnit = oldUnits.get(newOrgUnitKey);
-
-            // it means we have to fetch full
-            // version of new OrganisationUnit
-            if (oldOrgUnit == null) {
-                unitsToDownload.add(newOrgUnitKey);
-                continue;
-            }
-
-            DateTime newLastUpdated = DateTime.parse(newOrgUnit.getLastUpdated());
-            DateTime oldLastUpdated = DateTime.parse(oldOrgUnit.getLastUpdated());
-
-            if (newLastUpdated.isAfter(oldLastUpdated)) {
-                // we need to update current version
-                unitsToDownload.add(newOrgUnitKey);
-            }
-        }
-
-        Map<String, OrganisationUnit> newUnits = getNewFullOrganisationUnits(unitsToDownload);
-        List<OrganisationUnit> combinedUnits = new ArrayList<>();
-        for (String newOrgUnitKey : newShortUnits.keySet()) {
-            OrganisationUnit newUnit = newUnits.get(newOrgUnitKey);
-            OrganisationUnit oldUnit = oldUnits.get(newOrgUnitKey);
-
-            if (newUnit != null) {
-                combinedUnits.add(newUnit);
-                continue;
-            }
-
-            if (oldUnit != null) {
-                combinedUnits.add(oldUnit);
-            }
-        }
-
-        return combinedUnits;
-    }
-
-    private Map<String, OrganisationUnit> getNewBaseOrganisationUnits() throws APIException {
-        List<OrganisationUnit> units = (new GetAssignedOrganisationUnitsTask(
+        List<OrganisationUnit> assignedUnits = (new GetAssignedOrganisationUnitsTask(
                 mDhisManager, mSession.getServerUri(), mSession.getCredentials()
         )).run();
 
-        List<OrganisationUnit> childUnits = (new GetOrganisationUnitsTask(
-                mDhisManager, mSession.getServerUri(), mSession.getCredentials(),
-                toIds(units), null, true
-        )).run();
-
-        units.addAll(childUnits);
-        return toMap(units);
-    }
-
-    private Map<String, OrganisationUnit> getNewFullOrganisationUnits(List<String> unitsToDownload) throws APIException {
-        Map<String, OrganisationUnit> map = new HashMap<>();
-        if (unitsToDownload.size() > 0) {
-            map = toMap(
-                    (new GetOrganisationUnitsTask(
-                            mDhisManager, mSession.getServerUri(), mSession.getCredentials(),
-                            null, unitsToDownload, false
-                    )).run()
-            );
-        }
-        return map;
-    }
-
-    private Map<String, OrganisationUnit> getOldFullOrganisationUnits() {
-        Map<String, OrganisationUnit> map = new HashMap<>();
-        List<OrganisationUnit> orgUnits = mOrgUnitHandler.query();
-        for (OrganisationUnit orgUnit : orgUnits) {
-            List<DataSet> dataSets = mUnitDataSetHandler
-                    .queryDataSets(orgUnit.getId());
-            orgUnit.setDataSets(dataSets);
-            map.put(orgUnit.getId(), orgUnit);
+        OrganisationUnitCrawler crawler = new OrganisationUnitCrawler(mDhisManager, mSession,
+                toIds(assignedUnits), mMaxDepth, Integer.MAX_VALUE,
+                GetOrganisationUnitsTask.FULL_FIELDS, CHUNK_SIZE, PARALLELISM);
+        List<OrganisationUnit> units = new ArrayList<>();
+        try {
+            List<OrganisationUnit> chunk;
+            while ((chunk = crawler.next()) != null) {
+                units.addAll(chunk);
+            }
+        } finally {
+            crawler.shutdown();
         }
-        return map;
+        return units;
     }
 }
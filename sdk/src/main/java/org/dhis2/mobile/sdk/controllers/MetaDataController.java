@@ -34,6 +34,9 @@ import android.content.OperationApplicationException;
 import android.os.RemoteException;
 
 import org.dhis2.mobile.sdk.DhisManager;
+import org.dhis2.mobile.sdk.controllers.Pipeline.Sink;
+import org.dhis2.mobile.sdk.controllers.Pipeline.StageStats;
+import org.dhis2.mobile.sdk.entities.BaseIdentifiableEntity;
 import org.dhis2.mobile.sdk.entities.Category;
 import org.dhis2.mobile.sdk.entities.CategoryCombo;
 import org.dhis2.mobile.sdk.entities.CategoryOption;
@@ -41,6 +44,12 @@ import org.dhis2.mobile.sdk.entities.CategoryOptionCombo;
 import org.dhis2.mobile.sdk.entities.DataSet;
 import org.dhis2.mobile.sdk.entities.OrganisationUnit;
 import org.dhis2.mobile.sdk.network.APIException;
+import org.dhis2.mobile.sdk.network.CancellationToken;
+import org.dhis2.mobile.sdk.network.http.ApiRequest;
+import org.dhis2.mobile.sdk.network.http.Response;
+import org.dhis2.mobile.sdk.network.tasks.GetAssignedOrganisationUnitsTask;
+import org.dhis2.mobile.sdk.network.tasks.GetDataSetsTask;
+import org.dhis2.mobile.sdk.network.tasks.GetOrganisationUnitsTask;
 import org.dhis2.mobile.sdk.persistence.database.DbContract;
 import org.dhis2.mobile.sdk.persistence.handlers.CategoryComboHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.CategoryHandler;
@@ -50,20 +59,37 @@ import org.dhis2.mobile.sdk.persistence.handlers.ComboCategoryHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.DataSetCategoryComboHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.DataSetHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.OrganisationUnitHandler;
+import org.dhis2.mobile.sdk.persistence.handlers.RecentUnitsHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.SessionHandler;
+import org.dhis2.mobile.sdk.persistence.handlers.SyncCheckpointHandler;
 import org.dhis2.mobile.sdk.persistence.handlers.UnitDataSetHandler;
 import org.dhis2.mobile.sdk.persistence.models.Session;
+import org.dhis2.mobile.sdk.persistence.models.SyncCheckpoint;
+import org.dhis2.mobile.sdk.persistence.models.SyncCheckpoint.Stage;
+import org.dhis2.mobile.sdk.persistence.models.SyncScope;
+import org.joda.time.DateTime;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.dhis2.mobile.sdk.utils.DbUtils.partition;
 import static org.dhis2.mobile.sdk.utils.DbUtils.toIds;
+import static org.dhis2.mobile.sdk.utils.DbUtils.toMap;
 
 public final class MetaDataController implements IController<Object> {
+    private static final String TAG = MetaDataController.class.getSimpleName();
+    private static final int CHUNK_SIZE = 50;
+    // chunks waiting between two stages of pipeline
+    private static final int QUEUE_CAPACITY = 2;
+    // organisation unit chunks downloaded at the same time
+    private static final int CRAWLER_PARALLELISM = 3;
+
     private final Context mContext;
     private final DhisManager mDhisManager;
     private final OrganisationUnitHandler mOrgUnitHandler;
@@ -76,6 +102,10 @@ public final class MetaDataController implements IController<Object> {
     private final CategoryOptionHandler mCatOptionHandler;
     private final CategoryToOptionsHandler mCategoryToOptionHandler;
     private final Session mSession;
+    private final SyncCheckpointHandler mCheckpointHandler;
+    private final SyncScope mSyncScope;
+    private final RecentUnitsHandler mRecentUnitsHandler;
+    private final int mOrgUnitMaxDepth;
 
     public MetaDataController(Context context,
                               DhisManager dhisManager,
@@ -89,7 +119,11 @@ public final class MetaDataController implements IController<Object> {
                               ComboCategoryHandler comboCatHandler,
                               CategoryOptionHandler catOptionHandler,
                               CategoryToOptionsHandler categoryToOptionsHandler,
-                              SessionHandler sessionHandler) {
+                              SessionHandler sessionHandler,
+                              SyncCheckpointHandler checkpointHandler,
+                              SyncScope syncScope,
+                              RecentUnitsHandler recentUnitsHandler,
+                              int orgUnitMaxDepth) {
         mContext = context;
         mDhisManager = dhisManager;
         mOrgUnitHandler = orgUnitHandler;
@@ -102,35 +136,275 @@ public final class MetaDataController implements IController<Object> {
         mCatOptionHandler = catOptionHandler;
         mCategoryToOptionHandler = categoryToOptionsHandler;
         mSession = sessionHandler.get();
+        mCheckpointHandler = checkpointHandler;
+        mSyncScope = syncScope;
+        mRecentUnitsHandler = recentUnitsHandler;
+        mOrgUnitMaxDepth = orgUnitMaxDepth;
     }
 
+    /**
+     * Synchronization is split into stages. Full organisation units and
+     * data sets are downloaded and persisted in chunks, so if run fails,
+     * the next one downloads only the chunks which were not stored yet.
+     * Chunks go through a pipeline, so the next chunk is being downloaded
+     * while previous ones are parsed, compared and persisted. Stages which
+     * were finished by interrupted run are skipped, and their base lists
+     * are taken from checkpoint, as long as sync scope did not change.
+     *
+     * Only units within sync scope are downloaded. After scope change,
+     * only units which are not stored yet are downloaded in full, and
+     * units which fell out of scope are removed locally together with
+     * data sets which are not assigned to any of remaining units.
+     */
     @Override
     public Object run() throws APIException {
-        // first we need to fetch all metadata from server
-        List<OrganisationUnit> units = getOrganisationUnits();
-        List<DataSet> dataSets = getDataSets(units);
+        String scope = mSyncScope + ", maxDepth=" + mOrgUnitMaxDepth;
+        SyncCheckpoint checkpoint = mCheckpointHandler.get();
+        Stage resumeStage = scope.equals(checkpoint.getScope()) ? checkpoint.getStage() : null;
+        if (resumeStage != null) {
+            mDhisManager.getLogManager().LOGD(TAG, "Resuming synchronization " +
+                    "interrupted at stage " + resumeStage);
+        }
+
+        Set<String> unitIds;
+        Set<String> rootIds;
+        if (isFinished(resumeStage, Stage.ORGANISATION_UNITS)) {
+            unitIds = checkpoint.getUnitIds();
+            rootIds = checkpoint.getRootIds();
+        } else {
+            // lists of previous scope must not be re-used
+            checkpoint.setScope(scope);
+            checkpoint.setUnitIds(new HashSet<String>());
+            checkpoint.setRootIds(new HashSet<String>());
+            checkpoint.setDataSetIds(new HashSet<String>());
+
+            // hierarchy of scope is always crawled again,
+            // since it is needed in order to find removed units
+            checkpoint.setStage(Stage.BASE_LISTS);
+            Set<String> assignedIds = new HashSet<>(toIds((new GetAssignedOrganisationUnitsTask(
+                    mDhisManager, mSession.getServerUri(), mSession.getCredentials()
+            )).run()));
+            Map<String, OrganisationUnit> oldUnits = toMap(mOrgUnitHandler.query());
+
+            checkpoint.setStage(Stage.ORGANISATION_UNITS);
+            putCheckpoint(checkpoint);
+            OrganisationUnitCrawler crawler = newCrawler(assignedIds);
+            rootIds = crawler.getRootIds();
+            unitIds = syncOrganisationUnits(crawler, oldUnits, checkpoint);
+            checkpoint.setUnitIds(unitIds);
+            checkpoint.setRootIds(rootIds);
+        }
+
+        Set<String> dataSetIds;
+        if (isFinished(resumeStage, Stage.DATA_SETS)) {
+            dataSetIds = checkpoint.getDataSetIds();
+        } else {
+            // data sets of units which were not stored are read from database
+            Map<String, Set<String>> unitDataSets = mUnitDataSetHandler.queryDataSetIds();
+            unitDataSets.putAll(checkpoint.getUnitDataSets());
+            unitDataSets.keySet().retainAll(unitIds);
+
+            Set<String> assignedDataSetIds = new HashSet<>();
+            for (Set<String> ids : unitDataSets.values()) {
+                assignedDataSetIds.addAll(ids);
+            }
+
+            checkpoint.setStage(Stage.DATA_SETS);
+            putCheckpoint(checkpoint);
+            Map<String, DataSet> baseDataSets = getBaseDataSets(new ArrayList<>(assignedDataSetIds));
+            Map<String, DataSet> oldDataSets = toMap(mDataSetHandler.query());
+            syncDataSets(partition(findUpdated(baseDataSets, oldDataSets), CHUNK_SIZE),
+                    oldDataSets.keySet());
+            dataSetIds = new HashSet<>(baseDataSets.keySet());
+            checkpoint.setDataSetIds(dataSetIds);
+        }
+
+        checkpoint.setStage(Stage.RELATIONSHIPS);
+        putCheckpoint(checkpoint);
+        Map<String, Set<String>> newUnitDataSets = new HashMap<>();
+        for (String orgUnitId : checkpoint.getUnitDataSets().keySet()) {
+            if (unitIds.contains(orgUnitId)) {
+                Set<String> ids = new HashSet<>(checkpoint.getUnitDataSets().get(orgUnitId));
+                ids.retainAll(dataSetIds);
+                newUnitDataSets.put(orgUnitId, ids);
+            }
+        }
+
+        // stored rows are read again, since previous stages
+        // could have been finished by interrupted run
+        List<ContentProviderOperation> ops = new ArrayList<>();
+        ops.addAll(mUnitDataSetHandler.sync(newUnitDataSets));
+        ops.addAll(mOrgUnitHandler.deleteMissing(mOrgUnitHandler.query(), unitIds));
+        ops.addAll(mOrgUnitHandler.markAssigned(rootIds));
+        ops.addAll(mDataSetHandler.deleteMissing(mDataSetHandler.query(), dataSetIds));
+        applyBatch(ops);
+
         //List<CategoryCombo> catCombos = getCategoryCombos(dataSets);
         //List<Category> cats = getCats(catCombos);
         //List<CategoryOption> catOptions = getCatOptions(
         //        new ArrayList<CategoryOptionCombo>(), cats);
 
-        /*
-        List<CategoryOptionCombo> catOptCombos = getCatOptCombos(catCombos);
-        */
+        mCheckpointHandler.delete();
+        return new Object();
+    }
+
+    /**
+     * Hierarchy is crawled with just ids, levels and lastUpdated of units.
+     * Full units are downloaded only for those which are not stored yet
+     * or were updated since, so retry of interrupted sync downloads only
+     * units whose chunks were not persisted.
+     *
+     * @return ids of all units which were crawled.
+     */
+    private Set<String> syncOrganisationUnits(OrganisationUnitCrawler crawler,
+                                              final Map<String, OrganisationUnit> oldUnits,
+                                              final SyncCheckpoint checkpoint) throws APIException {
+        final AtomicInteger downloads = new AtomicInteger();
+        try {
+            List<StageStats> stats = Pipeline.from("orgUnits", crawler, QUEUE_CAPACITY)
+                    .then("filter", new Pipeline.Stage<List<OrganisationUnit>, List<String>>() {
+
+                        @Override
+                        public List<String> process(List<OrganisationUnit> units) throws APIException {
+                            List<String> ids = new ArrayList<>();
+                            for (OrganisationUnit unit : units) {
+                                if (isUpdated(unit, oldUnits.get(unit.getId()))) {
+                                    ids.add(unit.getId());
+                                }
+                            }
+                            downloads.addAndGet(ids.size());
+                            return ids.isEmpty() ? null : ids;
+                        }
+                    })
+                    .then("fetch", new Pipeline.Stage<List<String>, Download<List<OrganisationUnit>>>() {
+
+                        @Override
+                        public Download<List<OrganisationUnit>> process(List<String> ids) throws APIException {
+                            return Download.fetch(new GetOrganisationUnitsTask(
+                                    mDhisManager, mSession.getServerUri(), mSession.getCredentials(),
+                                    null, ids, false
+                            ).getRequest());
+                        }
+                    })
+                    .then("parse", new Pipeline.Stage<Download<List<OrganisationUnit>>, List<OrganisationUnit>>() {
+
+                        @Override
+                        public List<OrganisationUnit> process(Download<List<OrganisationUnit>> download) throws APIException {
+                            return download.convert();
+                        }
+                    })
+                    .then("diff", new Pipeline.Stage<List<OrganisationUnit>, Batch>() {
+
+                        @Override
+                        public Batch process(List<OrganisationUnit> units) throws APIException {
+                            Batch batch = new Batch(mOrgUnitHandler.save(units, oldUnits.keySet()));
+                            for (OrganisationUnit unit : units) {
+                                batch.mUnitDataSets.put(unit.getId(),
+                                        new HashSet<>(toIds(unit.getDataSets())));
+                            }
+                            return batch;
+                        }
+                    })
+                    .into("persist", new Sink<Batch>() {
+
+                        @Override
+                        public void consume(Batch batch) throws APIException {
+                            if (batch.mOperations.isEmpty()) {
+                                return;
+                            }
+
+                            for (String orgUnitId : batch.mUnitDataSets.keySet()) {
+                                checkpoint.putUnitDataSets(orgUnitId, batch.mUnitDataSets.get(orgUnitId));
+                            }
+
+                            // resume token is stored first: if we die before
+                            // chunk is applied, units are simply downloaded again
+                            putCheckpoint(checkpoint);
+                            applyBatch(batch.mOperations);
+                        }
+                    })
+                    .run();
+            logStats(stats);
+        } finally {
+            crawler.shutdown();
+        }
+
+        Set<String> unitIds = crawler.getVisitedIds();
+        int removals = 0;
+        for (String id : oldUnits.keySet()) {
+            if (!unitIds.contains(id)) {
+                removals++;
+            }
+        }
+
+        // after scope change, this is the difference between scopes
+        mDhisManager.getLogManager().LOGD(TAG, "Organisation units in scope: " +
+                unitIds.size() + ", downloaded: " + downloads.get() + ", removed: " + removals);
+        return unitIds;
+    }
+
+    private void syncDataSets(List<List<String>> chunks,
+                              final Set<String> existingIds) throws APIException {
+        List<StageStats> stats = Pipeline.from("dataSets", chunks, QUEUE_CAPACITY)
+                .then("fetch", new Pipeline.Stage<List<String>, Download<List<DataSet>>>() {
+
+                    @Override
+                    public Download<List<DataSet>> process(List<String> ids) throws APIException {
+                        return Download.fetch(new GetDataSetsTask(
+                                mDhisManager, mSession.getServerUri(),
+                                mSession.getCredentials(), ids, false
+                        ).getRequest());
+                    }
+                })
+                .then("parse", new Pipeline.Stage<Download<List<DataSet>>, List<DataSet>>() {
+
+                    @Override
+                    public List<DataSet> process(Download<List<DataSet>> download) throws APIException {
+                        return download.convert();
+                    }
+                })
+                .then("diff", new Pipeline.Stage<List<DataSet>, Batch>() {
 
-        Queue<ContentProviderOperation> ops = new LinkedList<>();
-        ops.addAll(mOrgUnitHandler.sync(units));
-        ops.addAll(mDataSetHandler.sync(dataSets));
-        //ops.addAll(mCategoryComboHandler.sync(catCombos));
-        //ops.addAll(mCategoryHandler.sync(cats));
-        //ops.addAll(mCatOptionHandler.sync(catOptions));
+                    @Override
+                    public Batch process(List<DataSet> dataSets) throws APIException {
+                        return new Batch(mDataSetHandler.save(dataSets, existingIds));
+                    }
+                })
+                .into("persist", new Sink<Batch>() {
 
-        // Handling relationships
-        ops.addAll(mUnitDataSetHandler.sync(units));
-        //ops.addAll(mDataSetCatComboHandler.sync(dataSets));
-        //ops.addAll(mComboCategoryHandler.sync(catCombos));
-        //ops.addAll(mCategoryToOptionHandler.sync(cats));
+                    @Override
+                    public void consume(Batch batch) throws APIException {
+                        applyBatch(batch.mOperations);
+                    }
+                })
+                .run();
+        logStats(stats);
+    }
+
+    private void logStats(List<StageStats> stats) {
+        for (StageStats stageStats : stats) {
+            mDhisManager.getLogManager().LOGD(TAG, stageStats.toString());
+        }
+    }
+
+    private static boolean isFinished(Stage resumeStage, Stage stage) {
+        return resumeStage != null && resumeStage.ordinal() > stage.ordinal();
+    }
+
+    private void putCheckpoint(SyncCheckpoint checkpoint) throws APIException {
+        // cancelled sync may still be running while user logs out, it
+        // must not store checkpoint after logout deleted it
+        CancellationToken.throwIfCancelled(null);
+        mCheckpointHandler.put(checkpoint);
+    }
+
+    private void applyBatch(List<ContentProviderOperation> ops) throws APIException {
+        if (ops.isEmpty()) {
+            return;
+        }
 
+        // do not touch database if job was cancelled meanwhile
+        CancellationToken.throwIfCancelled(null);
         try {
             mContext.getContentResolver().applyBatch(
                     DbContract.AUTHORITY, new ArrayList<>(ops)
@@ -140,27 +414,80 @@ public final class MetaDataController implements IController<Object> {
         } catch (OperationApplicationException e) {
             throw APIException.unexpectedError(null, e);
         }
+    }
 
-        return new Object();
+    /**
+     * @return ids of items which are new or were updated on server.
+     */
+    private static <T extends BaseIdentifiableEntity> List<String> findUpdated(
+            Map<String, T> newItems, Map<String, T> oldItems) {
+        List<String> ids = new ArrayList<>();
+        for (String id : newItems.keySet()) {
+            if (isUpdated(newItems.get(id), oldItems.get(id))) {
+                ids.add(id);
+            }
+        }
+        return ids;
     }
 
-    private List<OrganisationUnit> getOrganisationUnits() throws APIException {
-        return (new GetOrganisationUnitsController(
-                mDhisManager, mOrgUnitHandler, mUnitDataSetHandler, mSession
-        )).run();
+    /**
+     * @param oldItem stored version of item, or null if it is not stored.
+     */
+    private static boolean isUpdated(BaseIdentifiableEntity newItem,
+                                     BaseIdentifiableEntity oldItem) {
+        if (oldItem == null) {
+            return true;
+        }
+
+        DateTime newLastUpdated = DateTime.parse(newItem.getLastUpdated());
+        DateTime oldLastUpdated = DateTime.parse(oldItem.getLastUpdated());
+        return newLastUpdated.isAfter(oldLastUpdated);
     }
 
-    private List<DataSet> getDataSets(List<OrganisationUnit> units) throws APIException {
-        /* extracting ids of assigned dataSets from units */
-        Set<String> dataSetIds = new HashSet<>();
-        if (units != null && units.size() > 0) {
-            for (OrganisationUnit orgUnit : units) {
-                dataSetIds.addAll(toIds(orgUnit.getDataSets()));
+    /**
+     * Units used for data entry are downloaded without their children.
+     * Until there are any, hierarchy below assigned units is downloaded,
+     * otherwise user would have no unit to start data entry with.
+     */
+    private OrganisationUnitCrawler newCrawler(Set<String> assignedIds) {
+        Set<String> rootIds = assignedIds;
+        int maxDepth = mOrgUnitMaxDepth;
+        int maxLevel = Integer.MAX_VALUE;
+        switch (mSyncScope.getType()) {
+            case MAX_LEVEL: {
+                // level chosen by user replaces the default depth limit
+                maxDepth = Integer.MAX_VALUE;
+                maxLevel = mSyncScope.getMaxLevel();
+                break;
+            }
+            case SUBTREES: {
+                rootIds = new HashSet<>(mSyncScope.getUnitIds());
+                break;
+            }
+            case RECENT_DATA_ENTRY: {
+                Set<String> recentIds = mRecentUnitsHandler.query(System.currentTimeMillis() -
+                        TimeUnit.DAYS.toMillis(mSyncScope.getDays()));
+                if (!recentIds.isEmpty()) {
+                    rootIds = recentIds;
+                    maxDepth = 0;
+                }
+                break;
             }
         }
-        return (new GetDataSetsController(
-                mDhisManager, mDataSetHandler, mSession, new ArrayList<>(dataSetIds)
-        )).run();
+
+        return new OrganisationUnitCrawler(mDhisManager, mSession, new ArrayList<>(rootIds),
+                maxDepth, maxLevel, GetOrganisationUnitsTask.TREE_FIELDS,
+                CHUNK_SIZE, CRAWLER_PARALLELISM);
+    }
+
+    private Map<String, DataSet> getBaseDataSets(List<String> ids) throws APIException {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        return toMap((new GetDataSetsTask(
+                mDhisManager, mSession.getServerUri(),
+                mSession.getCredentials(), ids, true
+        )).run());
     }
 
     private List<CategoryCombo> getCategoryCombos(List<DataSet> dataSets) throws APIException {
@@ -216,4 +543,39 @@ public final class MetaDataController implements IController<Object> {
         )).run();
     }
     */
+
+    /**
+     * Response of a request which is not parsed yet.
+     */
+    private static final class Download<T> {
+        private final ApiRequest<String, T> mRequest;
+        private final Response mResponse;
+
+        private Download(ApiRequest<String, T> request, Response response) {
+            mRequest = request;
+            mResponse = response;
+        }
+
+        static <T> Download<T> fetch(ApiRequest<String, T> request) throws APIException {
+            return new Download<>(request, request.fetch());
+        }
+
+        T convert() throws APIException {
+            return mRequest.convert(mResponse);
+        }
+    }
+
+    /**
+     * Operations of one chunk together with data sets of
+     * its organisation units, which go to resume token.
+     */
+    private static final class Batch {
+        private final List<ContentProviderOperation> mOperations;
+        private final Map<String, Set<String>> mUnitDataSets;
+
+        private Batch(List<ContentProviderOperation> operations) {
+            mOperations = operations;
+            mUnitDataSets = new HashMap<>();
+        }
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.controllers;
+
+import org.dhis2.mobile.sdk.DhisManager;
+import org.dhis2.mobile.sdk.entities.OrganisationUnit;
+import org.dhis2.mobile.sdk.network.APIException;
+import org.dhis2.mobile.sdk.network.CancellationToken;
+import org.dhis2.mobile.sdk.network.tasks.GetOrganisationUnitsTask;
+import org.dhis2.mobile.sdk.persistence.models.Session;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.dhis2.mobile.sdk.utils.DbUtils.partition;
+
+/**
+ * Downloads hierarchy below given organisation units breadth first.
+ * Units of one level are requested in chunks by their ids, several
+ * chunks at a time, with given fields, which have to include the level
+ * of children. Children listed by units of a level become the next
+ * level once all chunks of the current one arrived. Chunks are handed
+ * out as they arrive, so they can be processed while the rest is downloaded.
+ */
+final class OrganisationUnitCrawler implements Pipeline.Source<List<OrganisationUnit>> {
+    private final DhisManager mDhisManager;
+    private final Session mSession;
+    private final int mMaxDepth;
+    private final int mMaxLevel;
+    private final String mFields;
+    private final int mChunkSize;
+    private final int mParallelism;
+    private final ExecutorService mExecutor;
+    private final CompletionService<List<OrganisationUnit>> mCompletionService;
+
+    private final Set<String> mRootIds;
+    // ids of all units which were queued for download
+    private final Set<String> mVisitedIds;
+    private final Queue<List<String>> mChunks;
+    private List<String> mNextLevel;
+    private int mDepth;
+    private int mPending;
+
+    /**
+     * @param maxDepth number of levels below root units which are downloaded.
+     * @param maxLevel units below this level of hierarchy are not downloaded.
+     * @param fields fields of units, for example GetOrganisationUnitsTask.TREE_FIELDS.
+     */
+    OrganisationUnitCrawler(DhisManager dhisManager, Session session, List<String> rootIds,
+                            int maxDepth, int maxLevel, String fields,
+                            int chunkSize, int parallelism) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Maximum depth must not be negative");
+        }
+
+        mDhisManager = dhisManager;
+        mSession = session;
+        mMaxDepth = maxDepth;
+        mMaxLevel = maxLevel;
+        mFields = fields;
+        mChunkSize = chunkSize;
+        mParallelism = parallelism;
+        mExecutor = Executors.newFixedThreadPool(parallelism);
+        mCompletionService = new ExecutorCompletionService<>(mExecutor);
+
+        mRootIds = new HashSet<>(rootIds);
+        mVisitedIds = new HashSet<>(rootIds);
+        mChunks = new LinkedList<>();
+        mNextLevel = new ArrayList<>(mVisitedIds);
+        mDepth = -1;
+    }
+
+    /**
+     * @return chunk of organisation units, or null when whole
+     * hierarchy was downloaded.
+     */
+    @Override
+    public List<OrganisationUnit> next() throws APIException {
+        try {
+            if (mPending == 0 && mChunks.isEmpty()) {
+                if (mNextLevel.isEmpty()) {
+                    shutdown();
+                    return null;
+                }
+
+                mChunks.addAll(partition(mNextLevel, mChunkSize));
+                mNextLevel = new ArrayList<>();
+                mDepth++;
+            }
+
+            // keep only few chunks in flight, so downloaded units
+            // do not pile up in memory when storing them is slower
+            while (mPending < mParallelism && !mChunks.isEmpty()) {
+                submit(mChunks.poll());
+            }
+
+            List<OrganisationUnit> units = take();
+            if (mDepth < mMaxDepth) {
+                for (OrganisationUnit unit : units) {
+                    if (unit.getChildren() == null) {
+                        continue;
+                    }
+
+                    for (OrganisationUnit child : unit.getChildren()) {
+                        if (child.getLevel() <= mMaxLevel && mVisitedIds.add(child.getId())) {
+                            mNextLevel.add(child.getId());
+                        }
+                    }
+                }
+            }
+            return units;
+        } catch (APIException e) {
+            shutdown();
+            throw e;
+        }
+    }
+
+    Set<String> getRootIds() {
+        return mRootIds;
+    }
+
+    /**
+     * @return ids of all units which were downloaded, valid once next() returned null.
+     */
+    Set<String> getVisitedIds() {
+        return mVisitedIds;
+    }
+
+    void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    private void submit(final List<String> ids) {
+        // requests run on pool threads, but belong to the calling job
+        final CancellationToken token = CancellationToken.current();
+        mCompletionService.submit(new Callable<List<OrganisationUnit>>() {
+
+            @Override
+            public List<OrganisationUnit> call() throws APIException {
+                CancellationToken.attach(token);
+                try {
+                    return (new GetOrganisationUnitsTask(
+                            mDhisManager, mSession.getServerUri(), mSession.getCredentials(),
+                            null, ids, mFields
+                    )).run();
+                } finally {
+                    CancellationToken.detach();
+                }
+            }
+        });
+        mPending++;
+    }
+
+    private List<OrganisationUnit> take() throws APIException {
+        try {
+            Future<List<OrganisationUnit>> future = mCompletionService.take();
+            mPending--;
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw APIException.unexpectedError(null, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof APIException) {
+                throw (APIException) e.getCause();
+            }
+            throw APIException.unexpectedError(null, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.controllers;
+
+import org.dhis2.mobile.sdk.network.APIException;
+import org.dhis2.mobile.sdk.network.CancellationToken;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Producer / consumer chain where each stage runs on its own thread and
+ * stages are connected by bounded queues. Slow stage blocks the ones in
+ * front of it, so number of items in flight never exceeds capacity of
+ * the queues. First failure stops the whole pipeline and is rethrown
+ * from run(). Cancellation token of the calling thread is attached to
+ * all stage threads.
+ */
+final class Pipeline {
+    private static final Object END = new Object();
+
+    private final String mName;
+    private final Source<?> mSource;
+    private final int mCapacity;
+    private final List<String> mStageNames;
+    private final List<Stage<Object, Object>> mStages;
+    private final List<StageStats> mStats;
+
+    private Pipeline(String name, Source<?> source, int capacity,
+                     List<String> stageNames, List<Stage<Object, Object>> stages) {
+        mName = name;
+        mSource = source;
+        mCapacity = capacity;
+        mStageNames = stageNames;
+        mStages = stages;
+        mStats = new ArrayList<>();
+    }
+
+    /**
+     * @param capacity maximum number of items waiting between two stages.
+     */
+    static <I> Builder<I> from(String name, List<I> inputs, int capacity) {
+        final Iterator<I> iterator = inputs.iterator();
+        return from(name, new Source<I>() {
+
+            @Override
+            public I next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+        }, capacity);
+    }
+
+    /**
+     * Inputs are pulled from source on the thread of the first stage,
+     * so source can produce them while the pipeline is running.
+     *
+     * @param capacity maximum number of items waiting between two stages.
+     */
+    static <I> Builder<I> from(String name, Source<I> source, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        return new Builder<I>(name, source, capacity);
+    }
+
+    /**
+     * Blocks until all inputs went through all stages.
+     *
+     * @return metrics of each stage.
+     */
+    List<StageStats> run() throws APIException {
+        final int count = mStages.size();
+        final List<BlockingQueue<Object>> queues = new ArrayList<>();
+        for (int i = 0; i < count - 1; i++) {
+            queues.add(new ArrayBlockingQueue<>(mCapacity));
+        }
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CancellationToken token = CancellationToken.current();
+        final List<Thread> threads = new ArrayList<>();
+
+        mStats.clear();
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            final StageStats stats = new StageStats(mStageNames.get(i));
+            mStats.add(stats);
+
+            threads.add(new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    CancellationToken.attach(token);
+                    try {
+                        runStage(index, stats, queues);
+                    } catch (InterruptedException e) {
+                        // pipeline is being stopped
+                    } catch (Throwable throwable) {
+                        if (failure.compareAndSet(null, throwable)) {
+                            interrupt(threads);
+                        }
+                    } finally {
+                        CancellationToken.detach();
+                    }
+                }
+            }, mName + "-" + mStageNames.get(i)));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            interrupt(threads);
+            Thread.currentThread().interrupt();
+            throw APIException.unexpectedError(null, e);
+        }
+
+        Throwable throwable = failure.get();
+        if (throwable instanceof APIException) {
+            throw (APIException) throwable;
+        } else if (throwable != null) {
+            throw APIException.unexpectedError(null, throwable);
+        }
+        return mStats;
+    }
+
+    private void runStage(int index, StageStats stats,
+                          List<BlockingQueue<Object>> queues) throws InterruptedException {
+        BlockingQueue<Object> input = index > 0 ? queues.get(index - 1) : null;
+        BlockingQueue<Object> output = index < queues.size() ? queues.get(index) : null;
+        Stage<Object, Object> stage = mStages.get(index);
+
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            Object item;
+            if (input == null) {
+                long start = System.nanoTime();
+                item = mSource.next();
+                stats.mInputWaitTime += System.nanoTime() - start;
+                if (item == null) {
+                    item = END;
+                }
+            } else {
+                long start = System.nanoTime();
+                item = input.take();
+                stats.mInputWaitTime += System.nanoTime() - start;
+            }
+
+            if (item == END) {
+                if (output != null) {
+                    output.put(END);
+                }
+                return;
+            }
+
+            long start = System.nanoTime();
+            Object result = stage.process(item);
+            stats.mBusyTime += System.nanoTime() - start;
+            stats.mItems++;
+
+            if (output != null && result != null) {
+                start = System.nanoTime();
+                output.put(result);
+                stats.mOutputWaitTime += System.nanoTime() - start;
+                stats.mMaxQueueSize = Math.max(stats.mMaxQueueSize, output.size());
+            }
+        }
+    }
+
+    private static void interrupt(List<Thread> threads) {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    interface Source<O> {
+        /**
+         * @return next input, or null if there are no more inputs.
+         */
+        O next() throws APIException;
+    }
+
+    interface Stage<I, O> {
+        /**
+         * @return item passed to the next stage, or null if there is nothing to pass.
+         */
+        O process(I input) throws APIException;
+    }
+
+    interface Sink<I> {
+        void consume(I input) throws APIException;
+    }
+
+    static final class Builder<T> {
+        private final String mName;
+        private final Source<?> mSource;
+        private final int mCapacity;
+        private final List<String> mStageNames;
+        private final List<Stage<Object, Object>> mStages;
+
+        private Builder(String name, Source<?> source, int capacity) {
+            mName = name;
+            mSource = source;
+            mCapacity = capacity;
+            mStageNames = new ArrayList<>();
+            mStages = new ArrayList<>();
+        }
+
+        @SuppressWarnings("unchecked")
+        <O> Builder<O> then(String stageName, Stage<T, O> stage) {
+            mStageNames.add(stageName);
+            mStages.add((Stage<Object, Object>) (Stage<?, ?>) stage);
+            return (Builder<O>) this;
+        }
+
+        Pipeline into(String stageName, final Sink<T> sink) {
+            then(stageName, new Stage<T, Object>() {
+
+                @Override
+                public Object process(T input) throws APIException {
+                    sink.consume(input);
+                    return null;
+                }
+            });
+            return new Pipeline(mName, mSource, mCapacity, mStageNames, mStages);
+        }
+    }
+
+    /**
+     * Time stage spent waiting for input means stages in front of it are
+     * the bottleneck. Time spent waiting for space in output queue is the
+     * backpressure applied by slower stages behind it.
+     */
+    static final class StageStats {
+        private final String mName;
+        private long mItems;
+        private long mBusyTime;
+        private long mInputWaitTime;
+        private long mOutputWaitTime;
+        private int mMaxQueueSize;
+
+        StageStats(String name) {
+            mName = name;
+        }
+
+        String getName() {
+            return mName;
+        }
+
+        long getItems() {
+            return mItems;
+        }
+
+        long getBusyTime() {
+            return mBusyTime / 1000000;
+        }
+
+        long getInputWaitTime() {
+            return mInputWaitTime / 1000000;
+        }
+
+        long getOutputWaitTime() {
+            return mOutputWaitTime / 1000000;
+        }
+
+        int getMaxQueueSize() {
+            return mMaxQueueSize;
+        }
+
+        @Override
+        public String toString() {
+            return mName + "[items=" + mItems + ", busy=" + getBusyTime() +
+                    "ms, waitingForInput=" + getInputWaitTime() + "ms, blockedOnOutput=" +
+                    getOutputWaitTime() + "ms, maxQueueSize=" + mMaxQueueSize + "]";
+        }
+    }
+}
@@ -38,16 +38,23 @@ public class APIException extends RuntimeException {
     private final boolean mNetworkError;
     private final boolean mHttpError;
     private final boolean mConversionError;
-
+    private final boolean mCancelled;
 
     private APIException(String url, String message, Response response, Throwable exception,
                          boolean networkError, boolean httpError, boolean conversionError) {
+        this(url, message, response, exception, networkError, httpError, conversionError, false);
+    }
+
+    private APIException(String url, String message, Response response, Throwable exception,
+                         boolean networkError, boolean httpError, boolean conversionError,
+                         boolean cancelled) {
         super(message, exception);
         mUrl = url;
         mResponse = response;
         mNetworkError = networkError;
         mHttpError = httpError;
         mConversionError = conversionError;
+        mCancelled = cancelled;
     }
 
     public static APIException networkError(String url, IOException exception) {
@@ -75,6 +82,11 @@ public class APIException extends RuntimeException {
         return new APIException(url, exception.getMessage(), null, exception, false, false, false);
     }
 
+    public static APIException cancelledError(String url) {
+        return new APIException(url, "Request was cancelled", null, null,
+                false, false, false, true);
+    }
+
     /**
      * The request URL which produced the error.
      */
@@ -110,10 +122,17 @@ public class APIException extends RuntimeException {
         return mConversionError;
     }
 
+    /**
+     * Whether or not this error was the result of cancellation.
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
     /**
      * Whether or not this error was the result of a unknown error.
      */
     public boolean isUnknownError() {
-        return !mNetworkError && !mHttpError && !mConversionError;
+        return !mNetworkError && !mHttpError && !mConversionError && !mCancelled;
     }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.network;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Cooperative cancellation of work done on the current thread. Owner of
+ * the work attaches token to the worker thread, ApiRequest and HttpManager
+ * pick it up from there, so cancel() also aborts in-flight http calls.
+ */
+public final class CancellationToken {
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private final AtomicBoolean mCancelled = new AtomicBoolean();
+    // token is shared by threads of the same job, each of
+    // them registers listener for its own in-flight call
+    private final List<Registration> mRegistrations = new CopyOnWriteArrayList<>();
+
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    public static void attach(CancellationToken token) {
+        CURRENT.set(token);
+    }
+
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Throws APIException if the token attached to current thread was cancelled.
+     */
+    public static void throwIfCancelled(String url) throws APIException {
+        CancellationToken token = current();
+        if (token != null && token.isCancelled()) {
+            throw APIException.cancelledError(url);
+        }
+    }
+
+    public boolean isCancelled() {
+        return mCancelled.get();
+    }
+
+    public void cancel() {
+        if (!mCancelled.compareAndSet(false, true)) {
+            return;
+        }
+
+        for (Registration registration : mRegistrations) {
+            registration.fire();
+        }
+    }
+
+    /**
+     * Listener is called immediately if token is already cancelled. Returned
+     * handle has to be passed to removeOnCancelListener() once the work which
+     * listener is supposed to abort is over.
+     */
+    public Registration addOnCancelListener(OnCancelListener listener) {
+        Registration registration = new Registration(listener);
+        mRegistrations.add(registration);
+
+        // cancel() could have missed the registration
+        if (mCancelled.get()) {
+            registration.fire();
+        }
+        return registration;
+    }
+
+    /**
+     * Unregisters only the listener behind given handle,
+     * listeners added by other threads stay in place.
+     */
+    public void removeOnCancelListener(Registration registration) {
+        if (registration != null) {
+            mRegistrations.remove(registration);
+        }
+    }
+
+    public interface OnCancelListener {
+        public void onCancel();
+    }
+
+    public final class Registration {
+        private final OnCancelListener mListener;
+
+        private Registration(OnCancelListener listener) {
+            mListener = isNull(listener, "OnCancelListener must not be null");
+        }
+
+        /* Listener is called at most once, no matter who fires it first */
+        private void fire() {
+            if (mRegistrations.remove(this)) {
+                mListener.onCancel();
+            }
+        }
+    }
+}
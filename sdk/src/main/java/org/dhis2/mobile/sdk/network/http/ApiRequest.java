@@ -29,6 +29,7 @@
 package org.dhis2.mobile.sdk.network.http;
 
 import org.dhis2.mobile.sdk.network.APIException;
+import org.dhis2.mobile.sdk.network.CancellationToken;
 import org.dhis2.mobile.sdk.network.converters.IJsonConverter;
 import org.dhis2.mobile.sdk.network.managers.IHttpManager;
 import org.dhis2.mobile.sdk.network.managers.ILogManager;
@@ -72,13 +73,22 @@ public final class ApiRequest<I, T> {
     }
 
     public T request() {
+        return convert(fetch());
+    }
+
+    /**
+     * Performs http request. Returned response is always successful.
+     */
+    public Response fetch() {
         Response response = null;
-        T data = null;
 
+        CancellationToken.throwIfCancelled(mRequest.getUrl());
         try {
             mLogManager.LOGD(TAG, "Request URL " + mRequest.getUrl());
             response = mHttpManager.request(mRequest);
         } catch (IOException networkException) {
+            // cancelled call fails with IOException
+            CancellationToken.throwIfCancelled(mRequest.getUrl());
             throw APIException.networkError(mRequest.getUrl(), networkException);
         } catch (Exception unknownException) {
             throw APIException.unexpectedError(mRequest.getUrl(), unknownException);
@@ -93,6 +103,16 @@ public final class ApiRequest<I, T> {
             throw APIException.httpError(mRequest.getUrl(), response);
         }
 
+        return response;
+    }
+
+    /**
+     * Deserializes body of response returned by fetch(). Can be called
+     * on another thread, so parsing does not hold up the next request.
+     */
+    public T convert(Response response) {
+        T data = null;
+
         try {
             String responseBody = new String(response.getBody());
             data = mJsonConverter.deserialize(responseBody);
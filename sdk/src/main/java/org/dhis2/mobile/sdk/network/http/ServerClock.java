@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.sdk.network.http;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.util.Locale;
+
+/**
+ * Estimates current time on server from the Date header of responses,
+ * so decisions like expiry of periods do not depend on device clock.
+ * Offset has one second resolution of the header and is kept in memory
+ * only, until the first response device time is used.
+ */
+public final class ServerClock {
+    private static final String DATE_HEADER = "Date";
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormat
+            .forPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'")
+            .withLocale(Locale.US).withZoneUTC();
+
+    private volatile long mOffset;
+
+    public void update(Response response) {
+        if (response == null) {
+            return;
+        }
+
+        for (Header header : response.getHeaders()) {
+            if (DATE_HEADER.equalsIgnoreCase(header.getName()) && header.getValue() != null) {
+                try {
+                    long serverTime = HTTP_DATE.parseMillis(header.getValue());
+                    mOffset = serverTime - System.currentTimeMillis();
+                } catch (IllegalArgumentException e) {
+                    // malformed header, keep the previous offset
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Difference between server and device clocks in milliseconds.
+     */
+    public long getOffset() {
+        return mOffset;
+    }
+
+    public long currentTimeMillis() {
+        return System.currentTimeMillis() + mOffset;
+    }
+}
@@ -28,13 +28,16 @@
 
 package org.dhis2.mobile.sdk.network.managers;
 
+import com.squareup.okhttp.Call;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
 
+import org.dhis2.mobile.sdk.network.CancellationToken;
 import org.dhis2.mobile.sdk.network.http.Header;
 import org.dhis2.mobile.sdk.network.http.Request;
 import org.dhis2.mobile.sdk.network.http.Response;
 import org.dhis2.mobile.sdk.network.http.RestMethod;
+import org.dhis2.mobile.sdk.network.http.ServerClock;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -49,9 +52,11 @@ public final class HttpManager implements IHttpManager {
     private static final String CONTENT_TYPE_HEADER = "Content-Type";
 
     private final OkHttpClient mOkClient;
+    private final ServerClock mServerClock;
 
-    public HttpManager(OkHttpClient okHttpClient) {
+    public HttpManager(OkHttpClient okHttpClient, ServerClock serverClock) {
         mOkClient = okHttpClient;
+        mServerClock = serverClock;
     }
 
     private static com.squareup.okhttp.Request buildOkRequest(Request request) {
@@ -133,7 +138,29 @@ public final class HttpManager implements IHttpManager {
     @Override
     public Response request(Request request) throws IOException {
         com.squareup.okhttp.Request okRequest = buildOkRequest(request);
-        com.squareup.okhttp.Response okResponse = mOkClient.newCall(okRequest).execute();
-        return buildResponse(okResponse);
+        final Call call = mOkClient.newCall(okRequest);
+
+        CancellationToken token = CancellationToken.current();
+        CancellationToken.Registration registration = null;
+        if (token != null) {
+            registration = token.addOnCancelListener(new CancellationToken.OnCancelListener() {
+
+                @Override
+                public void onCancel() {
+                    call.cancel();
+                }
+            });
+        }
+
+        try {
+            com.squareup.okhttp.Response okResponse = call.execute();
+            Response response = buildResponse(okResponse);
+            mServerClock.update(response);
+            return response;
+        } finally {
+            if (token != null) {
+                token.removeOnCancelListener(registration);
+            }
+        }
     }
 }
@@ -30,6 +30,7 @@ package org.dhis2.mobile.sdk.network.managers;
 
 import android.net.Uri;
 
+import org.dhis2.mobile.sdk.network.http.ServerClock;
 import org.dhis2.mobile.sdk.network.models.Credentials;
 
 public interface INetworkManager {
@@ -41,6 +42,8 @@ public interface INetworkManager {
 
     public ILogManager getLogManager();
 
+    public ServerClock getServerClock();
+
     public Uri getServerUri();
 
     public void setServerUri(Uri uri);
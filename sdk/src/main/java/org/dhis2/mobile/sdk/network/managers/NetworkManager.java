@@ -32,6 +32,7 @@ import android.net.Uri;
 
 import com.squareup.okhttp.OkHttpClient;
 
+import org.dhis2.mobile.sdk.network.http.ServerClock;
 import org.dhis2.mobile.sdk.network.models.Credentials;
 
 public class NetworkManager implements INetworkManager {
@@ -39,12 +40,14 @@ public class NetworkManager implements INetworkManager {
     private IJsonManager mJsonManager;
     private IBase64Manager mBase64Manager;
     private ILogManager mLogManager;
+    private ServerClock mServerClock;
 
     private Uri mServerUri;
     private Credentials mCredentials;
 
     public NetworkManager() {
-        mHttpManager = new HttpManager(new OkHttpClient());
+        mServerClock = new ServerClock();
+        mHttpManager = new HttpManager(new OkHttpClient(), mServerClock);
         mJsonManager = new JsonManager();
         mBase64Manager = new Base64Manager();
         mLogManager = new LogManager();
@@ -70,6 +73,11 @@ public class NetworkManager implements INetworkManager {
         return mLogManager;
     }
 
+    @Override
+    public ServerClock getServerClock() {
+        return mServerClock;
+    }
+
     @Override
     public Uri getServerUri() {
         return mServerUri;
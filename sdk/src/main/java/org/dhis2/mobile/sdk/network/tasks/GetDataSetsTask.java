@@ -86,4 +86,12 @@ public final class GetDataSetsTask implements ITask<List<DataSet>> {
     public List<DataSet> run() throws APIException {
         return mRequest.request();
     }
+
+    /**
+     * Gives access to fetch() and convert() steps of request,
+     * so they can run on different threads.
+     */
+    public ApiRequest<String, List<DataSet>> getRequest() {
+        return mRequest;
+    }
 }
@@ -41,14 +41,27 @@ import org.dhis2.mobile.sdk.network.models.Credentials;
 import java.util.List;
 
 public final class GetOrganisationUnitsTask implements ITask<List<OrganisationUnit>> {
+    /**
+     * Just enough to walk the hierarchy and to find out which
+     * units have to be downloaded in full.
+     */
+    public static final String TREE_FIELDS = "id,lastUpdated,level,children[id,level]";
+    public static final String FULL_FIELDS = getFields(false);
+
     private ApiRequest<String, List<OrganisationUnit>> mRequest;
 
     public GetOrganisationUnitsTask(NetworkManager manager,
                                     Uri serverUri, Credentials credentials,
                                     List<String> parents, List<String> ids, boolean flat) {
+        this(manager, serverUri, credentials, parents, ids, getFields(flat));
+    }
+
+    public GetOrganisationUnitsTask(NetworkManager manager,
+                                    Uri serverUri, Credentials credentials,
+                                    List<String> parents, List<String> ids, String fields) {
         String base64Credentials = manager.getBase64Manager()
                 .toBase64(credentials);
-        String url = buildQuery(serverUri, parents, ids, flat);
+        String url = buildQuery(serverUri, parents, ids, fields);
         Request request = RequestBuilder.forUri(url)
                 .header("Authorization", base64Credentials)
                 .header("Accept", "application/json")
@@ -61,6 +74,11 @@ public final class GetOrganisationUnitsTask implements ITask<List<OrganisationUn
 
     public static String buildQuery(Uri serverUri, List<String> parents,
                                     List<String> ids, boolean flat) {
+        return buildQuery(serverUri, parents, ids, getFields(flat));
+    }
+
+    public static String buildQuery(Uri serverUri, List<String> parents,
+                                    List<String> ids, String fields) {
         if ((parents == null || parents.size() <= 0) &&
                 (ids == null || ids.size() <= 0)) {
             throw new IllegalArgumentException("You have to specify organisation unit ids to download");
@@ -68,8 +86,25 @@ public final class GetOrganisationUnitsTask implements ITask<List<OrganisationUn
 
         Uri.Builder builder = serverUri.buildUpon()
                 .appendEncodedPath("api/organisationUnits/")
-                .appendQueryParameter("paging", "false");
+                .appendQueryParameter("paging", "false")
+                .appendQueryParameter("fields", fields);
+
+        if (ids != null && ids.size() > 0) {
+            for (String orgUnitId : ids) {
+                builder.appendQueryParameter("filter", "id:eq:" + orgUnitId);
+            }
+        }
+
+        if (parents != null && parents.size() > 0) {
+            for (String parent : parents) {
+                builder.appendQueryParameter("filter", "parent.id:eq:" + parent);
+            }
+        }
 
+        return builder.build().toString();
+    }
+
+    private static String getFields(boolean flat) {
         // organisationUnits[id,created,lastUpdated,name,displayName,level,parent,
         // children[id,created,lastUpdated,name,displayName,level,parent]]
         String baseIdentityParams = "id,created,lastUpdated,name,displayName";
@@ -84,26 +119,19 @@ public final class GetOrganisationUnitsTask implements ITask<List<OrganisationUn
                     "]";
             fields += "," + "level" + "," + parentParams + "," + dataSetParams + "," + childrenParams;
         }
-
-        builder.appendQueryParameter("fields", fields);
-
-        if (ids != null && ids.size() > 0) {
-            for (String orgUnitId : ids) {
-                builder.appendQueryParameter("filter", "id:eq:" + orgUnitId);
-            }
-        }
-
-        if (parents != null && parents.size() > 0) {
-            for (String parent : parents) {
-                builder.appendQueryParameter("filter", "parent.id:eq:" + parent);
-            }
-        }
-
-        return builder.build().toString();
+        return fields;
     }
 
     @Override
     public List<OrganisationUnit> run() throws APIException {
         return mRequest.request();
     }
+
+    /**
+     * Gives access to fetch() and convert() steps of request,
+     * so they can run on different threads.
+     */
+    public ApiRequest<String, List<OrganisationUnit>> getRequest() {
+        return mRequest;
+    }
 }
@@ -54,11 +54,14 @@ import java.util.ArrayList;
 
 import static android.content.ContentUris.withAppendedId;
 import static android.text.TextUtils.isEmpty;
+import static org.dhis2.mobile.sdk.persistence.database.StatementCache.prependArg;
+import static org.dhis2.mobile.sdk.persistence.database.StatementCache.whereId;
 
 public final class DbContentProvider extends ContentProvider {
     private static final int ORGANISATION_UNITS = 100;
     private static final int ORGANISATION_UNIT_ID = 101;
     private static final int ORGANISATION_UNIT_ID_DATASETS = 102;
+    private static final int ORGANISATION_UNIT_ID_CHILDREN = 103;
 
     private static final int DATA_SETS = 200;
     private static final int DATA_SET_ID = 201;
@@ -89,7 +92,14 @@ public final class DbContentProvider extends ContentProvider {
 
 
     private static final UriMatcher URI_MATCHER = buildMatcher();
+    private final ThreadLocal<Boolean> mApplyingBatch = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return false;
+        }
+    };
     private DbHelper mDbHelper;
+    private StatementCache mStatementCache;
 
     private static UriMatcher buildMatcher() {
         UriMatcher matcher = new UriMatcher(UriMatcher.NO_MATCH);
@@ -99,6 +109,8 @@ public final class DbContentProvider extends ContentProvider {
                 OrganisationUnits.ORGANISATION_UNIT_ID, ORGANISATION_UNIT_ID);
         matcher.addURI(DbContract.AUTHORITY,
                 OrganisationUnits.ORGANISATION_UNIT_ID_DATASETS, ORGANISATION_UNIT_ID_DATASETS);
+        matcher.addURI(DbContract.AUTHORITY,
+                OrganisationUnits.ORGANISATION_UNIT_ID_CHILDREN, ORGANISATION_UNIT_ID_CHILDREN);
 
         matcher.addURI(DbContract.AUTHORITY,
                 DataSets.DATASETS, DATA_SETS);
@@ -151,6 +163,7 @@ public final class DbContentProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
         mDbHelper = new DbHelper(getContext());
+        mStatementCache = new StatementCache();
         return true;
     }
 
@@ -161,6 +174,8 @@ public final class DbContentProvider extends ContentProvider {
                 return DbContract.OrganisationUnits.CONTENT_TYPE;
             case ORGANISATION_UNIT_ID:
                 return OrganisationUnits.CONTENT_ITEM_TYPE;
+            case ORGANISATION_UNIT_ID_CHILDREN:
+                return OrganisationUnits.CONTENT_TYPE;
             case ORGANISATION_UNIT_ID_DATASETS:
                 return DataSets.CONTENT_TYPE;
             case DATA_SETS:
@@ -219,6 +234,11 @@ public final class DbContentProvider extends ContentProvider {
                 return queryId(uri, OrganisationUnits.TABLE_NAME,
                         OrganisationUnits.ID, projection, selection, selectionArgs, sortOrder, id);
             }
+            case ORGANISATION_UNIT_ID_CHILDREN: {
+                String id = OrganisationUnits.getId(uri);
+                return queryId(uri, OrganisationUnits.TABLE_NAME,
+                        OrganisationUnits.PARENT, projection, selection, selectionArgs, sortOrder, id);
+            }
             case ORGANISATION_UNIT_ID_DATASETS: {
                 String id = OrganisationUnits.getId(uri);
                 return queryId(uri, DbSchema.UNIT_JOIN_DATA_SET_TABLE,
@@ -321,8 +341,7 @@ public final class DbContentProvider extends ContentProvider {
         }
     }
 
-    @Override
-    public Uri insert(Uri uri, ContentValues values) {
+    private Uri doInsert(Uri uri, ContentValues values) {
         switch (URI_MATCHER.match(uri)) {
             case ORGANISATION_UNITS: {
                 return insert(OrganisationUnits.TABLE_NAME, values, uri);
@@ -356,8 +375,7 @@ public final class DbContentProvider extends ContentProvider {
         }
     }
 
-    @Override
-    public int delete(Uri uri, String selection, String[] selectionArgs) {
+    private int doDelete(Uri uri, String selection, String[] selectionArgs) {
         switch (URI_MATCHER.match(uri)) {
             case ORGANISATION_UNITS: {
                 return delete(OrganisationUnits.TABLE_NAME,
@@ -409,9 +427,8 @@ public final class DbContentProvider extends ContentProvider {
         }
     }
 
-    @Override
-    public int update(Uri uri, ContentValues values,
-                      String selection, String[] selectionArgs) {
+    private int doUpdate(Uri uri, ContentValues values,
+                         String selection, String[] selectionArgs) {
         switch (URI_MATCHER.match(uri)) {
             case ORGANISATION_UNITS: {
                 return update(OrganisationUnits.TABLE_NAME,
@@ -463,14 +480,55 @@ public final class DbContentProvider extends ContentProvider {
         }
     }
 
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        Uri insertedUri = doInsert(uri, values);
+        notifyChange(uri);
+        return insertedUri;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        int count = doDelete(uri, selection, selectionArgs);
+        if (count > 0) {
+            notifyChange(uri);
+        }
+        return count;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values,
+                      String selection, String[] selectionArgs) {
+        int count = doUpdate(uri, values, selection, selectionArgs);
+        if (count > 0) {
+            notifyChange(uri);
+        }
+        return count;
+    }
+
+    private void notifyChange(Uri uri) {
+        // observers are notified once, when the whole batch is applied
+        if (!mApplyingBatch.get()) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
     private Cursor query(Uri uri, String tableName, String[] projection,
                          String selection, String[] selectionArgs, String sortOrder) {
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
         SQLiteQueryBuilder qBuilder = new SQLiteQueryBuilder();
         qBuilder.setTables(tableName);
 
+        String aggregate = uri.getQueryParameter(DbContract.QUERY_PARAMETER_AGGREGATE);
+        if (aggregate != null) {
+            String sql = qBuilder.buildQuery(aggregateProjection(aggregate),
+                    selection, null, null, null, null);
+            return queryAggregate(uri, aggregate, sql, selectionArgs);
+        }
+
         Cursor cursor = qBuilder.query(
-                db, projection, selection, selectionArgs, null, null, sortOrder
+                db, projection, selection, selectionArgs, null, null, sortOrder,
+                uri.getQueryParameter(DbContract.QUERY_PARAMETER_LIMIT)
         );
 
         cursor.setNotificationUri(getContext().getContentResolver(), uri);
@@ -496,16 +554,41 @@ public final class DbContentProvider extends ContentProvider {
 
     private Cursor queryId(Uri uri, String tableName, String colId, String[] projection,
                            String selection, String[] selectionArgs, String sortOrder, String id) {
+        String aggregate = uri.getQueryParameter(DbContract.QUERY_PARAMETER_AGGREGATE);
+        if (aggregate != null) {
+            String sql = mStatementCache.getQuery(tableName, colId,
+                    aggregateProjection(aggregate), selection, null, null);
+            return queryAggregate(uri, aggregate, sql, prependArg(id, selectionArgs));
+        }
+
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
-        SQLiteQueryBuilder qBuilder = new SQLiteQueryBuilder();
+        // children of unit are read page by page
+        String sql = mStatementCache.getQuery(tableName, colId, projection, selection,
+                sortOrder, uri.getQueryParameter(DbContract.QUERY_PARAMETER_LIMIT));
 
-        qBuilder.setTables(tableName);
-        qBuilder.appendWhere(colId + " = " + "'" + id + "'");
+        Cursor cursor = db.rawQuery(sql, prependArg(id, selectionArgs));
+        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        return cursor;
+    }
 
-        Cursor cursor = qBuilder.query(
-                db, projection, selection, selectionArgs, null, null, sortOrder
-        );
+    private static String[] aggregateProjection(String aggregate) {
+        if (DbContract.AGGREGATE_COUNT.equals(aggregate)) {
+            return new String[]{"COUNT(*) AS " + DbContract.COLUMN_COUNT};
+        } else if (DbContract.AGGREGATE_EXISTS.equals(aggregate)) {
+            return new String[]{"1"};
+        }
+        throw new IllegalArgumentException("Unsupported aggregate: " + aggregate);
+    }
+
+    private Cursor queryAggregate(Uri uri, String aggregate,
+                                  String sql, String[] selectionArgs) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        if (DbContract.AGGREGATE_EXISTS.equals(aggregate)) {
+            // SQLite stops scanning at the first matching row
+            sql = "SELECT EXISTS(" + sql + ") AS " + DbContract.COLUMN_EXISTS;
+        }
 
+        Cursor cursor = db.rawQuery(sql, selectionArgs);
         cursor.setNotificationUri(getContext().getContentResolver(), uri);
         return cursor;
     }
@@ -513,41 +596,50 @@ public final class DbContentProvider extends ContentProvider {
     private int deleteId(String tableName, String colId,
                          String selection, String[] selectionArgs, String id) {
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
-        String where = colId + " = " + "'" + id + "'";
-        if (!isEmpty(selection)) {
-            where += " AND " + selection;
+        if (isEmpty(selection)) {
+            return mStatementCache.executeDelete(db, tableName, colId, id);
         }
 
-        return db.delete(tableName, where, selectionArgs);
+        return db.delete(tableName, whereId(colId, selection),
+                prependArg(id, selectionArgs));
     }
 
     private int updateId(String tableName, String colId,
                          String selection, String[] selectionArgs,
                          String id, ContentValues values) {
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
-        String where = colId + " = " + "'" + id + "'";
-        if (!isEmpty(selection)) {
-            where += " AND " + selection;
+        if (isEmpty(selection)) {
+            return mStatementCache.executeUpdate(db, tableName, colId, id, values);
         }
 
-        return db.update(tableName, values, where, selectionArgs);
+        return db.update(tableName, values, whereId(colId, selection),
+                prependArg(id, selectionArgs));
     }
 
     @Override
     public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
             throws OperationApplicationException {
         final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        final ContentProviderResult[] results;
+        mApplyingBatch.set(true);
         db.beginTransaction();
         try {
             final int numOperations = operations.size();
-            final ContentProviderResult[] results = new ContentProviderResult[numOperations];
+            results = new ContentProviderResult[numOperations];
             for (int i = 0; i < numOperations; i++) {
                 results[i] = operations.get(i).apply(this, results, i);
             }
             db.setTransactionSuccessful();
-            return results;
         } finally {
             db.endTransaction();
+            mApplyingBatch.set(false);
+        }
+
+        if (operations.size() > 0) {
+            // notifying parent uri reaches observers of all tables
+            getContext().getContentResolver()
+                    .notifyChange(DbContract.BASE_CONTENT_URI, null);
         }
+        return results;
     }
 }
\ No newline at end of file
@@ -35,6 +35,42 @@ import android.provider.BaseColumns;
 public final class DbContract {
     public static final String AUTHORITY = "org.dhis2.mobile.sdk.persistence.database.DbContentProvider";
     public static final Uri BASE_CONTENT_URI = Uri.parse("content://" + AUTHORITY);
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+    public static final String QUERY_PARAMETER_AGGREGATE = "aggregate";
+    public static final String AGGREGATE_COUNT = "count";
+    public static final String AGGREGATE_EXISTS = "exists";
+    public static final String COLUMN_COUNT = "_count";
+    public static final String COLUMN_EXISTS = "_exists";
+
+    public static Uri withLimit(Uri uri, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        return uri.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                .build();
+    }
+
+    /**
+     * Query of returned uri yields single row with COLUMN_COUNT
+     * column, instead of rows matching the selection.
+     */
+    public static Uri withCount(Uri uri) {
+        return uri.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_AGGREGATE, AGGREGATE_COUNT)
+                .build();
+    }
+
+    /**
+     * Query of returned uri yields single row with COLUMN_EXISTS column,
+     * which is 1 if at least one row matches the selection and 0 otherwise.
+     */
+    public static Uri withExists(Uri uri) {
+        return uri.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_AGGREGATE, AGGREGATE_EXISTS)
+                .build();
+    }
 
     public static interface OrganisationUnitColumns {
         public static final String TABLE_NAME = "organizationUnitsTable";
@@ -44,6 +80,9 @@ public final class DbContract {
         public static final String NAME = "name";
         public static final String DISPLAY_NAME = "displayName";
         public static final String LEVEL = "level";
+        public static final String PARENT = "parent";
+        // 1 for units which are assigned to user, roots of hierarchy
+        public static final String ASSIGNED = "assigned";
     }
 
     public static interface DataSetColumns {
@@ -126,6 +165,10 @@ public final class DbContract {
         public static final String ORGANISATION_UNIT_ID = PATH + "/*/";
         public static final String ORGANISATION_UNIT_ID_DATASETS = ORGANISATION_UNIT_ID
                 + DataSets.TABLE_NAME;
+        public static final String CHILDREN = "children";
+        public static final String ORGANISATION_UNIT_ID_CHILDREN = ORGANISATION_UNIT_ID + CHILDREN;
+        // alias of computed column, see OrganisationUnitHandler.TREE_PROJECTION
+        public static final String HAS_CHILDREN = "hasChildren";
 
         public static final String CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE +
                 "/org.dhis2.mobile.OrganisationUnit";
@@ -140,6 +183,16 @@ public final class DbContract {
                     .build();
         }
 
+        /**
+         * Uri of children of unit, which are queried through index on parent.
+         */
+        public static Uri buildUriWithChildren(String orgUnitId) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(orgUnitId)
+                    .appendPath(CHILDREN)
+                    .build();
+        }
+
         public static String getId(Uri uri) {
             return uri.getPathSegments().get(ORGANIZATION_UNIT_ID_POSITION);
         }
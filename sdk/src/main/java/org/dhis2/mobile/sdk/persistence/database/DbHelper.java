@@ -35,7 +35,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 public final class DbHelper extends SQLiteOpenHelper {
     private static final String DB_NAME = "dhis2.db";
     private static final String ENABLE_FOREIGN_KEYS = "PRAGMA foreign_keys = ON;";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 2;
 
     public DbHelper(Context context) {
         super(context, DB_NAME, null, DATABASE_VERSION);
@@ -44,6 +44,8 @@ public final class DbHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(DbSchema.CREATE_ORGANIZATION_UNIT_TABLE);
+        db.execSQL(DbSchema.CREATE_ORGANIZATION_UNIT_PARENT_INDEX);
+        db.execSQL(DbSchema.CREATE_ORGANIZATION_UNIT_ASSIGNED_INDEX);
         db.execSQL(DbSchema.CREATE_DATA_SET_TABLE);
         db.execSQL(DbSchema.CREATE_UNIT_DATA_SETS_TABLE);
         db.execSQL(DbSchema.CREATE_CATEGORY_COMBOS_TABLE);
@@ -46,7 +46,18 @@ public final class DbSchema {
             OrganisationUnits.LAST_UPDATED + " TEXT NOT NULL," +
             OrganisationUnits.NAME + " TEXT," +
             OrganisationUnits.DISPLAY_NAME + " TEXT," +
-            OrganisationUnits.LEVEL + " INTEGER" + ")";
+            OrganisationUnits.LEVEL + " INTEGER," +
+            OrganisationUnits.PARENT + " TEXT," +
+            OrganisationUnits.ASSIGNED + " INTEGER NOT NULL DEFAULT 0" + ")";
+
+    // children of a unit are read in order of their names
+    public static final String CREATE_ORGANIZATION_UNIT_PARENT_INDEX = "CREATE INDEX " +
+            OrganisationUnits.TABLE_NAME + "ParentIndex ON " + OrganisationUnits.TABLE_NAME + "(" +
+            OrganisationUnits.PARENT + "," + OrganisationUnits.DISPLAY_NAME + ")";
+
+    public static final String CREATE_ORGANIZATION_UNIT_ASSIGNED_INDEX = "CREATE INDEX " +
+            OrganisationUnits.TABLE_NAME + "AssignedIndex ON " + OrganisationUnits.TABLE_NAME + "(" +
+            OrganisationUnits.ASSIGNED + ")";
 
     public static final String DROP_ORGANIZATION_UNIT_TABLE = "DROP TABLE IF EXISTS " + OrganisationUnits.TABLE_NAME;
 
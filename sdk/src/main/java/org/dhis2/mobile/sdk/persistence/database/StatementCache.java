@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.sdk.persistence.database;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static android.text.TextUtils.isEmpty;
+
+/**
+ * Keeps compiled statements for lookups by id, keyed by
+ * (table, operation, projection). Update and delete statements are
+ * compiled once and re-bound on each call. Queries have to go through
+ * a Cursor, so only their SQL text is cached; since the text is stable
+ * and all values are bound, SQLite reuses the prepared program from
+ * its per-connection statement cache.
+ */
+final class StatementCache {
+    private static final int DEFAULT_CAPACITY = 32;
+
+    private static final String OP_QUERY = "query";
+    private static final String OP_UPDATE = "update";
+    private static final String OP_DELETE = "delete";
+
+    private final Map<String, String> mQueries;
+    private final Map<String, SQLiteStatement> mStatements;
+    private SQLiteDatabase mDatabase;
+
+    StatementCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    StatementCache(final int capacity) {
+        mQueries = new LinkedHashMap<String, String>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+        mStatements = new LinkedHashMap<String, SQLiteStatement>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() > capacity) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private static String buildKey(String tableName, String operation,
+                                   String colId, Object extra) {
+        return tableName + "|" + operation + "|" + colId + "|" + extra;
+    }
+
+    static String[] prependArg(String arg, String[] args) {
+        if (args == null || args.length == 0) {
+            return new String[]{arg};
+        }
+
+        String[] result = new String[args.length + 1];
+        result[0] = arg;
+        System.arraycopy(args, 0, result, 1, args.length);
+        return result;
+    }
+
+    static String whereId(String colId, String selection) {
+        String where = colId + " = ?";
+        if (!isEmpty(selection)) {
+            where += " AND (" + selection + ")";
+        }
+        return where;
+    }
+
+    synchronized String getQuery(String tableName, String colId, String[] projection,
+                                 String selection, String sortOrder, String limit) {
+        String key = buildKey(tableName, OP_QUERY, colId, Arrays.toString(projection) +
+                "|" + selection + "|" + sortOrder + "|" + limit);
+        String sql = mQueries.get(key);
+        if (sql == null) {
+            sql = SQLiteQueryBuilder.buildQueryString(false, tableName, projection,
+                    whereId(colId, selection), null, null, sortOrder, limit);
+            mQueries.put(key, sql);
+        }
+        return sql;
+    }
+
+    synchronized int executeDelete(SQLiteDatabase db, String tableName,
+                                   String colId, String id) {
+        ensureDatabase(db);
+
+        String key = buildKey(tableName, OP_DELETE, colId, null);
+        SQLiteStatement statement = mStatements.get(key);
+        if (statement == null) {
+            statement = db.compileStatement("DELETE FROM " + tableName +
+                    " WHERE " + colId + " = ?");
+            mStatements.put(key, statement);
+        }
+
+        statement.clearBindings();
+        statement.bindString(1, id);
+        return statement.executeUpdateDelete();
+    }
+
+    synchronized int executeUpdate(SQLiteDatabase db, String tableName,
+                                   String colId, String id, ContentValues values) {
+        // same as SQLiteDatabase.update(), statement without
+        // columns to set would fail only when compiled
+        if (values == null || values.size() == 0) {
+            throw new IllegalArgumentException("Empty values");
+        }
+
+        ensureDatabase(db);
+
+        // the column set is a part of the key, since it
+        // defines the shape of the compiled statement
+        TreeSet<String> columns = new TreeSet<>(values.keySet());
+        String key = buildKey(tableName, OP_UPDATE, colId, columns);
+        SQLiteStatement statement = mStatements.get(key);
+        if (statement == null) {
+            StringBuilder sql = new StringBuilder();
+            sql.append("UPDATE ").append(tableName).append(" SET ");
+            int index = 0;
+            for (String column : columns) {
+                sql.append(index++ > 0 ? "," : "").append(column).append(" = ?");
+            }
+            sql.append(" WHERE ").append(colId).append(" = ?");
+            statement = db.compileStatement(sql.toString());
+            mStatements.put(key, statement);
+        }
+
+        statement.clearBindings();
+        int index = 1;
+        for (String column : columns) {
+            bind(statement, index++, values.get(column));
+        }
+        statement.bindString(index, id);
+        return statement.executeUpdateDelete();
+    }
+
+    synchronized void clear() {
+        for (SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+        mQueries.clear();
+    }
+
+    private void ensureDatabase(SQLiteDatabase db) {
+        // compiled statements belong to the database
+        // object which they were created with
+        if (mDatabase != db) {
+            clear();
+            mDatabase = db;
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof String) {
+            statement.bindString(index, (String) value);
+        } else if (value instanceof Boolean) {
+            statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+        } else if (value instanceof Float || value instanceof Double) {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            statement.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else {
+            statement.bindString(index, value.toString());
+        }
+    }
+}
@@ -40,8 +40,10 @@ import org.dhis2.mobile.sdk.persistence.database.DbContract.DataSets;
 import org.joda.time.DateTime;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.dhis2.mobile.sdk.utils.DbUtils.toMap;
 import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
@@ -94,8 +96,12 @@ public class DataSetHandler {
     }
 
     private static DataSet fromCursor(Cursor cursor) {
+        return fromCursor(cursor, null);
+    }
+
+    public static DataSet fromCursor(Cursor cursor, DataSet recycled) {
         isNull(cursor, "Cursor object must not be null");
-        DataSet dataSet = new DataSet();
+        DataSet dataSet = recycled != null ? recycled : new DataSet();
         dataSet.setId(cursor.getString(ID));
         dataSet.setCreated(cursor.getString(CREATED));
         dataSet.setLastUpdated(cursor.getString(LAST_UPDATED));
@@ -155,8 +161,10 @@ public class DataSetHandler {
         isNull(dataSet, "DataSet object must not be null");
 
         mLogManager.LOGD(TAG, "Updating " + dataSet.getName());
+        Uri uri = DataSets.CONTENT_URI.buildUpon()
+                .appendPath(dataSet.getId()).build();
         ops.add(ContentProviderOperation
-                .newUpdate(DataSets.CONTENT_URI)
+                .newUpdate(uri)
                 .withValues(toContentValues(dataSet))
                 .build());
     }
@@ -215,4 +223,31 @@ public class DataSetHandler {
 
         return ops;
     }
+
+    /**
+     * Inserts data sets which are not in existingIds and updates the rest.
+     */
+    public List<ContentProviderOperation> save(List<DataSet> dataSets,
+                                               Set<String> existingIds) {
+        List<ContentProviderOperation> ops = new ArrayList<>();
+        for (DataSet dataSet : dataSets) {
+            if (existingIds.contains(dataSet.getId())) {
+                update(ops, dataSet);
+            } else {
+                insert(ops, dataSet);
+            }
+        }
+        return ops;
+    }
+
+    public List<ContentProviderOperation> deleteMissing(Collection<DataSet> dataSets,
+                                                        Set<String> remainingIds) {
+        List<ContentProviderOperation> ops = new ArrayList<>();
+        for (DataSet dataSet : dataSets) {
+            if (!remainingIds.contains(dataSet.getId())) {
+                delete(ops, dataSet);
+            }
+        }
+        return ops;
+    }
 }
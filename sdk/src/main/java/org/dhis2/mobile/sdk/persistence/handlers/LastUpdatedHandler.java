@@ -52,8 +52,7 @@ public final class LastUpdatedHandler implements IPreferenceHandler<DateTime> {
     @Override
     public void put(DateTime dateTime) {
         isNull(dateTime, "DateTime object must not be null");
-        String lastUpdated = dateTime.toString(FORMAT);
-        mPrefs.edit().putString(LAST_UPDATED, lastUpdated).apply();
+        mPrefs.edit().putString(LAST_UPDATED, format(dateTime)).apply();
     }
 
     @Override
@@ -66,8 +65,16 @@ public final class LastUpdatedHandler implements IPreferenceHandler<DateTime> {
         String lastUpdated = mPrefs.getString(LAST_UPDATED, null);
         DateTime dateTime = null;
         if (lastUpdated != null) {
-            dateTime = DateTime.parse(lastUpdated);
+            dateTime = parse(lastUpdated);
         }
         return dateTime;
     }
+
+    public static String format(DateTime dateTime) {
+        return dateTime.toString(FORMAT);
+    }
+
+    public static DateTime parse(String lastUpdated) {
+        return DateTime.parse(lastUpdated);
+    }
 }
@@ -40,8 +40,10 @@ import org.dhis2.mobile.sdk.persistence.database.DbContract.OrganisationUnits;
 import org.joda.time.DateTime;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.dhis2.mobile.sdk.utils.DbUtils.toMap;
 import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
@@ -53,7 +55,25 @@ public final class OrganisationUnitHandler {
             OrganisationUnits.LAST_UPDATED,
             OrganisationUnits.NAME,
             OrganisationUnits.DISPLAY_NAME,
-            OrganisationUnits.LEVEL
+            OrganisationUnits.LEVEL,
+            OrganisationUnits.PARENT
+    };
+
+    /**
+     * PROJECTION with flag telling whether unit has children,
+     * which is looked up in index on parent column.
+     */
+    public static final String[] TREE_PROJECTION = new String[]{
+            OrganisationUnits.ID,
+            OrganisationUnits.CREATED,
+            OrganisationUnits.LAST_UPDATED,
+            OrganisationUnits.NAME,
+            OrganisationUnits.DISPLAY_NAME,
+            OrganisationUnits.LEVEL,
+            OrganisationUnits.PARENT,
+            "EXISTS(SELECT 1 FROM " + OrganisationUnits.TABLE_NAME + " AS child WHERE child." +
+                    OrganisationUnits.PARENT + " = " + OrganisationUnits.TABLE_NAME + "." +
+                    OrganisationUnits.ID + ") AS " + OrganisationUnits.HAS_CHILDREN
     };
     private static final String TAG = OrganisationUnitHandler.class.getSimpleName();
     private static final int ID = 0;
@@ -62,6 +82,8 @@ public final class OrganisationUnitHandler {
     private static final int NAME = 3;
     private static final int DISPLAY_NAME = 4;
     private static final int LEVEL = 5;
+    private static final int PARENT = 6;
+    private static final int HAS_CHILDREN = 7;
 
     private Context mContext;
 
@@ -79,21 +101,44 @@ public final class OrganisationUnitHandler {
         values.put(OrganisationUnits.NAME, unit.getName());
         values.put(OrganisationUnits.DISPLAY_NAME, unit.getDisplayName());
         values.put(OrganisationUnits.LEVEL, unit.getLevel());
+        values.put(OrganisationUnits.PARENT, unit.getParent() != null ?
+                unit.getParent().getId() : null);
         return values;
     }
 
     private static OrganisationUnit fromCursor(Cursor cursor) {
+        return fromCursor(cursor, null);
+    }
+
+    public static OrganisationUnit fromCursor(Cursor cursor, OrganisationUnit recycled) {
         isNull(cursor, "Cursor object must not be null");
-        OrganisationUnit unit = new OrganisationUnit();
+        OrganisationUnit unit = recycled != null ? recycled : new OrganisationUnit();
         unit.setId(cursor.getString(ID));
         unit.setCreated(cursor.getString(CREATED));
         unit.setLastUpdated(cursor.getString(LAST_UPDATED));
         unit.setName(cursor.getString(NAME));
         unit.setDisplayName(cursor.getString(DISPLAY_NAME));
         unit.setLevel(cursor.getInt(LEVEL));
+
+        String parentId = cursor.getString(PARENT);
+        if (parentId == null) {
+            unit.setParent(null);
+        } else {
+            OrganisationUnit parent = unit.getParent() != null ?
+                    unit.getParent() : new OrganisationUnit();
+            parent.setId(parentId);
+            unit.setParent(parent);
+        }
         return unit;
     }
 
+    /**
+     * Returns true if row read with TREE_PROJECTION has children.
+     */
+    public static boolean hasChildren(Cursor cursor) {
+        return cursor.getInt(HAS_CHILDREN) != 0;
+    }
+
     public static List<OrganisationUnit> map(Cursor cursor, boolean closeCursor) {
         List<OrganisationUnit> units = new ArrayList<>();
         if (cursor != null && cursor.getCount() > 0) {
@@ -187,4 +232,56 @@ public final class OrganisationUnitHandler {
 
         return ops;
     }
+
+    /**
+     * Inserts units which are not in existingIds and updates the rest.
+     */
+    public List<ContentProviderOperation> save(List<OrganisationUnit> units,
+                                               Set<String> existingIds) {
+        List<ContentProviderOperation> ops = new ArrayList<>();
+        for (OrganisationUnit unit : units) {
+            if (existingIds.contains(unit.getId())) {
+                update(ops, unit);
+            } else {
+                insert(ops, unit);
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * Marks units which are assigned to user, they are roots of the
+     * hierarchy shown to user. When sync is limited to a scope, roots
+     * of the scope are marked instead. Assignment is property of user,
+     * so it is set again on every sync, regardless of lastUpdated of units.
+     */
+    public List<ContentProviderOperation> markAssigned(Collection<String> assignedIds) {
+        List<ContentProviderOperation> ops = new ArrayList<>();
+        ops.add(ContentProviderOperation
+                .newUpdate(OrganisationUnits.CONTENT_URI)
+                .withValue(OrganisationUnits.ASSIGNED, 0)
+                .withSelection(OrganisationUnits.ASSIGNED + " != 0", null)
+                .build());
+
+        for (String id : assignedIds) {
+            Uri uri = OrganisationUnits.CONTENT_URI.buildUpon()
+                    .appendPath(id).build();
+            ops.add(ContentProviderOperation
+                    .newUpdate(uri)
+                    .withValue(OrganisationUnits.ASSIGNED, 1)
+                    .build());
+        }
+        return ops;
+    }
+
+    public List<ContentProviderOperation> deleteMissing(Collection<OrganisationUnit> units,
+                                                        Set<String> remainingIds) {
+        List<ContentProviderOperation> ops = new ArrayList<>();
+        for (OrganisationUnit unit : units) {
+            if (!remainingIds.contains(unit.getId())) {
+                delete(ops, unit);
+            }
+        }
+        return ops;
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.persistence.handlers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Remembers when each organisation unit was last used for data entry.
+ */
+public final class RecentUnitsHandler {
+    private static final String RECENT_UNITS = "preferences:RecentUnits";
+
+    private SharedPreferences mPrefs;
+
+    public RecentUnitsHandler(Context context) {
+        isNull(context, "Context object must not be null");
+        mPrefs = context.getSharedPreferences(RECENT_UNITS, Context.MODE_PRIVATE);
+    }
+
+    public void put(String orgUnitId, long time) {
+        isNull(orgUnitId, "Organisation unit id must not be null");
+        mPrefs.edit().putLong(orgUnitId, time).apply();
+    }
+
+    /**
+     * @return ids of units used for data entry at given time or later.
+     */
+    public Set<String> query(long since) {
+        Set<String> orgUnitIds = new HashSet<>();
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            if (entry.getValue() instanceof Long && (Long) entry.getValue() >= since) {
+                orgUnitIds.add(entry.getKey());
+            }
+        }
+        return orgUnitIds;
+    }
+
+    public void delete() {
+        mPrefs.edit().clear().apply();
+    }
+}
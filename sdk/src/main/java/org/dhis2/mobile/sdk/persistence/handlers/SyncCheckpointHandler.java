@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.persistence.handlers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.dhis2.mobile.sdk.persistence.models.SyncCheckpoint;
+import org.dhis2.mobile.sdk.persistence.models.SyncCheckpoint.Stage;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+public final class SyncCheckpointHandler implements IPreferenceHandler<SyncCheckpoint> {
+    private static final String SYNC_CHECKPOINT = "preferences:SyncCheckpoint";
+    private static final String STAGE = "key:stage";
+    private static final String SCOPE = "key:scope";
+    private static final String UNIT_DATA_SETS = "key:unitDataSets";
+    private static final String UNIT_IDS = "key:unitIds";
+    private static final String ROOT_IDS = "key:rootIds";
+    private static final String DATA_SET_IDS = "key:dataSetIds";
+
+    private SharedPreferences mPrefs;
+
+    public SyncCheckpointHandler(Context context) {
+        isNull(context, "Context object must not be null");
+        mPrefs = context.getSharedPreferences(SYNC_CHECKPOINT, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns empty checkpoint (with null stage) if there is nothing to resume.
+     */
+    @Override
+    public SyncCheckpoint get() {
+        String stage = mPrefs.getString(STAGE, null);
+        String unitDataSets = mPrefs.getString(UNIT_DATA_SETS, null);
+        SyncCheckpoint checkpoint = new SyncCheckpoint(stage != null ?
+                Stage.valueOf(stage) : null, fromJson(unitDataSets));
+        checkpoint.setScope(mPrefs.getString(SCOPE, null));
+        try {
+            checkpoint.setUnitIds(fromJsonArray(mPrefs.getString(UNIT_IDS, null)));
+            checkpoint.setRootIds(fromJsonArray(mPrefs.getString(ROOT_IDS, null)));
+            checkpoint.setDataSetIds(fromJsonArray(mPrefs.getString(DATA_SET_IDS, null)));
+        } catch (JSONException e) {
+            // corrupted base lists, finished stages run again
+            checkpoint.setStage(null);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Checkpoint is written synchronously, since it
+     * must be on disk before the chunk it describes.
+     */
+    @Override
+    public void put(SyncCheckpoint checkpoint) {
+        isNull(checkpoint, "SyncCheckpoint object must not be null");
+        Stage stage = checkpoint.getStage();
+        mPrefs.edit()
+                .putString(STAGE, stage != null ? stage.name() : null)
+                .putString(SCOPE, checkpoint.getScope())
+                .putString(UNIT_DATA_SETS, toJson(checkpoint.getUnitDataSets()))
+                .putString(UNIT_IDS, new JSONArray(checkpoint.getUnitIds()).toString())
+                .putString(ROOT_IDS, new JSONArray(checkpoint.getRootIds()).toString())
+                .putString(DATA_SET_IDS, new JSONArray(checkpoint.getDataSetIds()).toString())
+                .commit();
+    }
+
+    @Override
+    public void delete() {
+        mPrefs.edit().clear().commit();
+    }
+
+    private static String toJson(Map<String, Set<String>> unitDataSets) {
+        JSONObject json = new JSONObject();
+        try {
+            for (String orgUnitId : unitDataSets.keySet()) {
+                JSONArray dataSetIds = new JSONArray();
+                for (String dataSetId : unitDataSets.get(orgUnitId)) {
+                    dataSetIds.put(dataSetId);
+                }
+                json.put(orgUnitId, dataSetIds);
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return json.toString();
+    }
+
+    private static Map<String, Set<String>> fromJson(String string) {
+        Map<String, Set<String>> unitDataSets = new HashMap<>();
+        if (string == null) {
+            return unitDataSets;
+        }
+
+        try {
+            JSONObject json = new JSONObject(string);
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String orgUnitId = keys.next();
+                JSONArray dataSetIds = json.getJSONArray(orgUnitId);
+                Set<String> ids = new HashSet<>();
+                for (int i = 0; i < dataSetIds.length(); i++) {
+                    ids.add(dataSetIds.getString(i));
+                }
+                unitDataSets.put(orgUnitId, ids);
+            }
+        } catch (JSONException e) {
+            // corrupted checkpoint, sync starts over
+            unitDataSets.clear();
+        }
+        return unitDataSets;
+    }
+
+    private static Set<String> fromJsonArray(String string) throws JSONException {
+        Set<String> ids = new HashSet<>();
+        if (string == null) {
+            return ids;
+        }
+
+        JSONArray json = new JSONArray(string);
+        for (int i = 0; i < json.length(); i++) {
+            ids.add(json.getString(i));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.persistence.handlers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.dhis2.mobile.sdk.persistence.models.SyncScope;
+import org.dhis2.mobile.sdk.persistence.models.SyncScope.Type;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+public final class SyncScopeHandler implements IPreferenceHandler<SyncScope> {
+    private static final String SYNC_SCOPE = "preferences:SyncScope";
+    private static final String TYPE = "key:type";
+    private static final String MAX_LEVEL = "key:maxLevel";
+    private static final String UNIT_IDS = "key:unitIds";
+    private static final String DAYS = "key:days";
+
+    private SharedPreferences mPrefs;
+
+    public SyncScopeHandler(Context context) {
+        isNull(context, "Context object must not be null");
+        mPrefs = context.getSharedPreferences(SYNC_SCOPE, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns scope of assigned units if no other scope was set.
+     */
+    @Override
+    public SyncScope get() {
+        String type = mPrefs.getString(TYPE, null);
+        if (type == null) {
+            return SyncScope.assignedUnits();
+        }
+
+        switch (Type.valueOf(type)) {
+            case MAX_LEVEL:
+                return SyncScope.maxLevel(mPrefs.getInt(MAX_LEVEL, 0));
+            case SUBTREES:
+                return SyncScope.subtrees(fromJson(mPrefs.getString(UNIT_IDS, null)));
+            case RECENT_DATA_ENTRY:
+                return SyncScope.recentDataEntry(mPrefs.getInt(DAYS, 0));
+            default:
+                return SyncScope.assignedUnits();
+        }
+    }
+
+    @Override
+    public void put(SyncScope scope) {
+        isNull(scope, "SyncScope object must not be null");
+        mPrefs.edit()
+                .putString(TYPE, scope.getType().name())
+                .putInt(MAX_LEVEL, scope.getMaxLevel())
+                .putString(UNIT_IDS, new JSONArray(scope.getUnitIds()).toString())
+                .putInt(DAYS, scope.getDays())
+                .commit();
+    }
+
+    @Override
+    public void delete() {
+        mPrefs.edit().clear().commit();
+    }
+
+    private static List<String> fromJson(String string) {
+        List<String> unitIds = new ArrayList<>();
+        try {
+            JSONArray json = new JSONArray(string);
+            for (int i = 0; i < json.length(); i++) {
+                unitIds.add(json.getString(i));
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        return unitIds;
+    }
+}
@@ -39,8 +39,10 @@ import org.dhis2.mobile.sdk.network.managers.ILogManager;
 import org.dhis2.mobile.sdk.persistence.database.DbContract.UnitDataSets;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.dhis2.mobile.sdk.persistence.database.DbContract.OrganisationUnits.buildUriWithDataSets;
@@ -153,6 +155,37 @@ public class UnitDataSetHandler {
         return ops;
     }
 
+    /**
+     * @return ids of data sets assigned to each organisation unit.
+     */
+    public Map<String, Set<String>> queryDataSetIds() {
+        Map<String, Set<String>> unitDataSets = new HashMap<>();
+        for (Entry entry : queryRelationShip()) {
+            Set<String> dataSetIds = unitDataSets.get(entry.getOrgUnit());
+            if (dataSetIds == null) {
+                dataSetIds = new HashSet<>();
+                unitDataSets.put(entry.getOrgUnit(), dataSetIds);
+            }
+            dataSetIds.add(entry.getDataSet());
+        }
+        return unitDataSets;
+    }
+
+    public List<ContentProviderOperation> sync(Map<String, Set<String>> unitDataSets) {
+        isNull(unitDataSets, "Map<String, Set<String>> object must not be null");
+
+        Set<String> set = buildRelationShipSet(queryRelationShip());
+        List<ContentProviderOperation> ops = new ArrayList<>();
+        for (String orgUnitId : unitDataSets.keySet()) {
+            for (String dataSetId : unitDataSets.get(orgUnitId)) {
+                if (!set.contains(orgUnitId + dataSetId)) {
+                    insert(ops, orgUnitId, dataSetId);
+                }
+            }
+        }
+        return ops;
+    }
+
     private static class Entry {
         private String orgUnit;
         private String dataSet;
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.sdk.persistence.loaders;
+
+import android.database.Cursor;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Read-only list view over a Cursor. Rows are mapped only when
+ * get(position) is called, and entity instances are kept in a small
+ * pool which is recycled as the list is scrolled. Because of that,
+ * objects returned from get() must not be held onto: they can be
+ * refilled with data of another row later on.
+ * <p/>
+ * Lifecycle of the cursor is managed by TransformedCursorLoader, which
+ * closes it when the list is no longer delivered. Must be accessed
+ * from the UI thread only.
+ */
+public class CursorList<T> extends AbstractList<T> implements RandomAccess {
+    private static final int DEFAULT_POOL_SIZE = 64;
+
+    private final Cursor mCursor;
+    private final RowMapper<T> mMapper;
+    private final int mCount;
+
+    private final Object[] mItems;
+    private final int[] mPositions;
+
+    public CursorList(Cursor cursor, RowMapper<T> mapper) {
+        this(cursor, mapper, DEFAULT_POOL_SIZE);
+    }
+
+    public CursorList(Cursor cursor, RowMapper<T> mapper, int poolSize) {
+        mCursor = cursor;
+        mMapper = isNull(mapper, "RowMapper object must not be null");
+        mCount = cursor != null ? cursor.getCount() : 0;
+
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        mItems = new Object[poolSize];
+        mPositions = new int[poolSize];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int position) {
+        if (position < 0 || position >= mCount) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + mCount);
+        }
+
+        int slot = position % mItems.length;
+        T item = (T) mItems[slot];
+        if (item != null && mPositions[slot] == position) {
+            return item;
+        }
+
+        if (!mCursor.moveToPosition(position)) {
+            throw new IllegalStateException("Cannot move cursor to position " + position);
+        }
+
+        item = mMapper.map(mCursor, item);
+        mItems[slot] = item;
+        mPositions[slot] = position;
+        return item;
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+}
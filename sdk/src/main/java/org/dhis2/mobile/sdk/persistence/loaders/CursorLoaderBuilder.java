@@ -28,8 +28,12 @@
 
 package org.dhis2.mobile.sdk.persistence.loaders;
 
+import android.content.Context;
+import android.database.Cursor;
 import android.net.Uri;
 
+import org.dhis2.mobile.sdk.persistence.database.DbContract;
+
 public class CursorLoaderBuilder {
     private Uri mUri;
     private String[] mProjection;
@@ -71,4 +75,56 @@ public class CursorLoaderBuilder {
         return new TransformationCursorBuilder<T>(mUri, mProjection, mSelection,
                 mSelectionArgs, mSortOrder, transformation);
     }
+
+    /**
+     * Loads number of rows which match the selection,
+     * without materializing any of them.
+     */
+    public TransformationCursorBuilder<Integer> count() {
+        return new TransformationCursorBuilder<>(DbContract.withCount(mUri),
+                new String[]{DbContract.COLUMN_COUNT}, mSelection, mSelectionArgs,
+                null, CountTransformation.INSTANCE);
+    }
+
+    /**
+     * Loads true if at least one row matches the selection. Query
+     * stops at the first match, so it does not depend on table size.
+     */
+    public TransformationCursorBuilder<Boolean> exists() {
+        return new TransformationCursorBuilder<>(DbContract.withExists(mUri),
+                new String[]{DbContract.COLUMN_EXISTS}, mSelection, mSelectionArgs,
+                null, ExistsTransformation.INSTANCE);
+    }
+
+    /**
+     * Rows are going to be sorted by (keyColumn, idColumn),
+     * so sortOrder is ignored by paging loaders.
+     */
+    public <T> PagingCursorBuilder<T> paging(String keyColumn, String idColumn,
+                                             RowMapper<T> mapper) {
+        return new PagingCursorBuilder<T>(mUri, mProjection, mSelection,
+                mSelectionArgs, keyColumn, idColumn, mapper);
+    }
+
+    /* Stateless, so a single instance is enough to let shared loaders reuse its result */
+    static class CountTransformation implements Transformation<Integer> {
+        static final CountTransformation INSTANCE = new CountTransformation();
+
+        @Override
+        public Integer transform(Context context, Cursor cursor) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getInt(0);
+            }
+            return 0;
+        }
+    }
+
+    static class ExistsTransformation implements Transformation<Boolean> {
+        static final ExistsTransformation INSTANCE = new ExistsTransformation();
+
+        @Override
+        public Boolean transform(Context context, Cursor cursor) {
+            return cursor != null && cursor.moveToFirst() && cursor.getInt(0) == 1;
+        }
+    }
 }
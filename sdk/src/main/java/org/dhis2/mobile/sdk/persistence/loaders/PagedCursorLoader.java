@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.sdk.persistence.loaders;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Loader which delivers PagedList. Only the first page is loaded in
+ * loadInBackground(), the rest is fetched by the list itself as it is
+ * being scrolled. Any change of data behind the Uri triggers a reload.
+ */
+public class PagedCursorLoader<T> extends AsyncTaskLoader<PagedList<T>> {
+    final ForceLoadContentObserver mObserver;
+
+    final Uri mUri;
+    final String[] mProjection;
+    final String mSelection;
+    final String[] mSelectionArgs;
+    final String mKeyColumn;
+    final String mIdColumn;
+    final int mPageSize;
+    final RowMapper<T> mMapper;
+
+    PagedList<T> mResult;
+    boolean mObserverRegistered;
+
+    public PagedCursorLoader(Context context, Uri uri, String[] projection,
+                             String selection, String[] selectionArgs,
+                             String keyColumn, String idColumn,
+                             int pageSize, RowMapper<T> mapper) {
+        super(context);
+
+        mObserver = new ForceLoadContentObserver();
+        mUri = uri;
+        mProjection = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mKeyColumn = keyColumn;
+        mIdColumn = idColumn;
+        mPageSize = pageSize;
+        mMapper = mapper;
+    }
+
+    /* Runs on a worker thread */
+    @Override
+    public PagedList<T> loadInBackground() {
+        PagedList<T> list = new PagedList<>(getContext().getContentResolver(),
+                mUri, mProjection, mSelection, mSelectionArgs,
+                mKeyColumn, mIdColumn, mPageSize, mMapper);
+        list.loadFirstPage();
+        return list;
+    }
+
+    /* Runs on the UI thread */
+    @Override
+    public void deliverResult(PagedList<T> newResult) {
+        if (isReset()) {
+            releaseResources(newResult);
+            return;
+        }
+
+        PagedList<T> oldResult = mResult;
+        mResult = newResult;
+
+        if (isStarted()) {
+            super.deliverResult(newResult);
+        }
+
+        if (oldResult != null && oldResult != newResult) {
+            releaseResources(oldResult);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserverRegistered) {
+            getContext().getContentResolver()
+                    .registerContentObserver(mUri, true, mObserver);
+            mObserverRegistered = true;
+        }
+
+        if (mResult != null) {
+            deliverResult(mResult);
+        }
+        if (takeContentChanged() || mResult == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    public void onCanceled(PagedList<T> result) {
+        super.onCanceled(result);
+        releaseResources(result);
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+
+        if (mObserverRegistered) {
+            getContext().getContentResolver()
+                    .unregisterContentObserver(mObserver);
+            mObserverRegistered = false;
+        }
+
+        releaseResources(mResult);
+        mResult = null;
+    }
+
+    private void releaseResources(PagedList<T> result) {
+        if (result != null) {
+            result.close();
+        }
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(prefix);
+        writer.print("mUri=");
+        writer.println(mUri);
+        writer.print(prefix);
+        writer.print("mProjection=");
+        writer.println(Arrays.toString(mProjection));
+        writer.print(prefix);
+        writer.print("mSelection=");
+        writer.println(mSelection);
+        writer.print(prefix);
+        writer.print("mSelectionArgs=");
+        writer.println(Arrays.toString(mSelectionArgs));
+        writer.print(prefix);
+        writer.print("mKeyColumn=");
+        writer.println(mKeyColumn);
+        writer.print(prefix);
+        writer.print("mPageSize=");
+        writer.println(mPageSize);
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.sdk.persistence.loaders;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.dhis2.mobile.sdk.persistence.database.DbContract;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Executor;
+
+import static android.text.TextUtils.isEmpty;
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * List which is filled page by page using keyset pagination:
+ * every next page is fetched with (key, id) > (last key, last id)
+ * instead of OFFSET, so SQLite can seek directly to the start of it.
+ * <p/>
+ * Next page is prefetched in background when get() approaches the end of
+ * loaded rows. Pages which are far away from the last accessed position are
+ * dropped, only their start keys are retained in order to re-fetch them later.
+ * Until a page is (re)loaded, get() returns null for its positions.
+ * <p/>
+ * Must be accessed from the UI thread only.
+ */
+public class PagedList<T> extends AbstractList<T> implements RandomAccess {
+    private static final int KEEP_PAGES_AROUND = 2;
+
+    private final ContentResolver mResolver;
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final String mKeyColumn;
+    private final String mIdColumn;
+    private final int mPageSize;
+    private final RowMapper<T> mMapper;
+
+    private final Executor mExecutor;
+    private final Handler mHandler;
+    private final List<Page<T>> mPages;
+
+    private boolean mHasMore;
+    private boolean mClosed;
+    private OnPageLoadedListener mListener;
+
+    PagedList(ContentResolver resolver, Uri uri, String[] projection,
+              String selection, String[] selectionArgs, String keyColumn,
+              String idColumn, int pageSize, RowMapper<T> mapper) {
+        mResolver = isNull(resolver, "ContentResolver must not be null");
+        mUri = isNull(uri, "Uri object must not be null");
+        mProjection = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mKeyColumn = isNull(keyColumn, "Key column must not be null");
+        mIdColumn = isNull(idColumn, "Id column must not be null");
+        mPageSize = pageSize;
+        mMapper = isNull(mapper, "RowMapper object must not be null");
+
+        mExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+        mHandler = new Handler(Looper.getMainLooper());
+        mPages = new ArrayList<>();
+        mHasMore = true;
+    }
+
+    /* Can be called from worker thread, before the list is delivered */
+    void loadFirstPage() {
+        Page<T> page = new Page<>(null, null);
+        page.fill(fetch(page));
+        mPages.add(page);
+        mHasMore = page.rows.size() == mPageSize;
+    }
+
+    @Override
+    public T get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size());
+        }
+
+        int pageIndex = position / mPageSize;
+        Page<T> page = mPages.get(pageIndex);
+
+        trimPages(pageIndex);
+        if (mHasMore && pageIndex == mPages.size() - 1) {
+            // prefetching next page once we have
+            // reached the last page which was loaded
+            Page<T> last = mPages.get(mPages.size() - 1);
+            if (last.rows != null) {
+                loadPage(new Page<T>(last.lastKey, last.lastId), mPages.size());
+            }
+        }
+
+        if (page.rows == null) {
+            loadPage(page, pageIndex);
+            return null;
+        }
+
+        return page.rows.get(position % mPageSize);
+    }
+
+    @Override
+    public int size() {
+        int pages = mPages.size();
+        if (pages == 0) {
+            return 0;
+        }
+
+        // all pages except the last one are full
+        return (pages - 1) * mPageSize + mPages.get(pages - 1).size;
+    }
+
+    public boolean hasMore() {
+        return mHasMore;
+    }
+
+    public void setOnPageLoadedListener(OnPageLoadedListener listener) {
+        mListener = listener;
+    }
+
+    /* Pending page loads are ignored after the list was closed */
+    public void close() {
+        mClosed = true;
+        mListener = null;
+    }
+
+    private void trimPages(int currentPage) {
+        for (int i = 0; i < mPages.size(); i++) {
+            if (Math.abs(i - currentPage) > KEEP_PAGES_AROUND) {
+                mPages.get(i).rows = null;
+            }
+        }
+    }
+
+    private void loadPage(final Page<T> page, final int pageIndex) {
+        if (page.loading || mClosed) {
+            return;
+        }
+
+        page.loading = true;
+        if (pageIndex == mPages.size()) {
+            mPages.add(page);
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<T> rows = fetch(page);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(page, pageIndex, rows);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(Page<T> page, int pageIndex, List<T> rows) {
+        page.loading = false;
+        if (mClosed) {
+            return;
+        }
+
+        page.fill(rows);
+        if (pageIndex == mPages.size() - 1) {
+            mHasMore = rows.size() == mPageSize;
+        }
+
+        if (mListener != null) {
+            mListener.onPageLoaded();
+        }
+    }
+
+    /* Runs on worker thread */
+    private List<T> fetch(Page<T> page) {
+        String selection = mSelection;
+        List<String> args = new ArrayList<>();
+        if (mSelectionArgs != null) {
+            Collections.addAll(args, mSelectionArgs);
+        }
+
+        if (page.startId != null) {
+            String keyset;
+            if (page.startKey != null) {
+                keyset = "(" + mKeyColumn + " > ? OR (" + mKeyColumn +
+                        " = ? AND " + mIdColumn + " > ?))";
+                args.add(page.startKey);
+                args.add(page.startKey);
+            } else {
+                // NULLs are sorted first in SQLite
+                keyset = "((" + mKeyColumn + " IS NULL AND " + mIdColumn +
+                        " > ?) OR " + mKeyColumn + " IS NOT NULL)";
+            }
+            args.add(page.startId);
+            selection = isEmpty(selection) ? keyset : "(" + selection + ") AND " + keyset;
+        }
+
+        Cursor cursor = mResolver.query(DbContract.withLimit(mUri, mPageSize),
+                mProjection, selection, args.toArray(new String[args.size()]),
+                mKeyColumn + " ASC, " + mIdColumn + " ASC");
+
+        List<T> rows = new ArrayList<>();
+        if (cursor == null) {
+            return rows;
+        }
+
+        try {
+            int keyIndex = cursor.getColumnIndexOrThrow(mKeyColumn);
+            int idIndex = cursor.getColumnIndexOrThrow(mIdColumn);
+            while (cursor.moveToNext()) {
+                rows.add(mMapper.map(cursor, null));
+                if (cursor.isLast()) {
+                    page.lastKey = cursor.getString(keyIndex);
+                    page.lastId = cursor.getString(idIndex);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    public interface OnPageLoadedListener {
+        public void onPageLoaded();
+    }
+
+    private static class Page<T> {
+        final String startKey;
+        final String startId;
+
+        String lastKey;
+        String lastId;
+
+        List<T> rows;
+        int size;
+        boolean loading;
+
+        Page(String startKey, String startId) {
+            this.startKey = startKey;
+            this.startId = startId;
+        }
+
+        void fill(List<T> rows) {
+            this.rows = rows;
+            this.size = rows.size();
+        }
+    }
+}
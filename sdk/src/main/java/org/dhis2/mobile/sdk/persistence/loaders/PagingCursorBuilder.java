@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.sdk.persistence.loaders;
+
+import android.content.Context;
+import android.net.Uri;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+public class PagingCursorBuilder<T> {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private Uri mUri;
+    private String[] mProjection;
+    private String mSelection;
+    private String[] mSelectionArgs;
+    private String mKeyColumn;
+    private String mIdColumn;
+    private int mPageSize;
+    private RowMapper<T> mMapper;
+
+    public PagingCursorBuilder(Uri uri, String[] projection,
+                               String selection, String[] selectionArgs,
+                               String keyColumn, String idColumn, RowMapper<T> mapper) {
+        mUri = uri;
+        mProjection = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mKeyColumn = keyColumn;
+        mIdColumn = idColumn;
+        mMapper = mapper;
+        mPageSize = DEFAULT_PAGE_SIZE;
+    }
+
+    public PagingCursorBuilder<T> pageSize(int pageSize) {
+        mPageSize = pageSize;
+        return this;
+    }
+
+    public PagedCursorLoader<T> build(Context context) {
+        isNull(context, "Context object must not be null");
+        isNull(mUri, "Uri object must not be null");
+        isNull(mProjection, "String[] projection object must not be null");
+        isNull(mKeyColumn, "Key column must not be null");
+        isNull(mIdColumn, "Id column must not be null");
+        isNull(mMapper, "RowMapper object must not be null");
+
+        if (mPageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        return new PagedCursorLoader<>(
+                context, mUri, mProjection, mSelection, mSelectionArgs,
+                mKeyColumn, mIdColumn, mPageSize, mMapper
+        );
+    }
+}
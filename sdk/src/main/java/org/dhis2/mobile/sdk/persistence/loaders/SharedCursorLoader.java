@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.sdk.persistence.loaders;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.v4.content.Loader;
+
+import org.dhis2.mobile.sdk.persistence.loaders.SharedQuery.Snapshot;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Loader which does not run its own query, but subscribes to the
+ * SharedQueryRegistry instead. Loaders with identical queries and
+ * transformations receive the same result object.
+ */
+public class SharedCursorLoader<T> extends Loader<T> implements SharedQuery.Subscriber<T> {
+    final SharedQueryRegistry mRegistry;
+    final Transformation<T> mTransformation;
+
+    final Uri mUri;
+    final String[] mProjection;
+    final String mSelection;
+    final String[] mSelectionArgs;
+    final String mSortOrder;
+
+    SharedQuery mQuery;
+
+    T mResult;
+    Snapshot mSnapshot;
+
+    T mPendingResult;
+    Snapshot mPendingSnapshot;
+
+    public SharedCursorLoader(Context context, Uri uri, String[] projection, String selection,
+                              String[] selectionArgs, String sortOrder, Transformation<T> transformation) {
+        super(context);
+
+        mRegistry = SharedQueryRegistry.getInstance(context);
+        mTransformation = isNull(transformation, "Transformation object must not be null");
+        mUri = uri;
+        mProjection = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mSortOrder = sortOrder;
+    }
+
+    /* Runs on the UI thread */
+    @Override
+    public void onResult(Snapshot snapshot, T result) {
+        if (isReset()) {
+            return;
+        }
+
+        if (isStarted()) {
+            deliver(snapshot, result);
+        } else {
+            // holding the latest result until loader is started again
+            snapshot.acquire();
+            releasePending();
+            mPendingSnapshot = snapshot;
+            mPendingResult = result;
+        }
+    }
+
+    private void deliver(Snapshot snapshot, T result) {
+        snapshot.acquire();
+        Snapshot oldSnapshot = mSnapshot;
+        mSnapshot = snapshot;
+        mResult = result;
+
+        deliverResult(result);
+        if (oldSnapshot != null) {
+            oldSnapshot.release();
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mQuery == null) {
+            mQuery = mRegistry.subscribe(mUri, mProjection, mSelection,
+                    mSelectionArgs, mSortOrder, mTransformation, this);
+            return;
+        }
+
+        if (mPendingSnapshot != null) {
+            deliver(mPendingSnapshot, mPendingResult);
+            releasePending();
+        } else if (mResult != null) {
+            deliverResult(mResult);
+        }
+    }
+
+    @Override
+    protected void onForceLoad() {
+        if (mQuery != null) {
+            mQuery.requestLoad();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        if (mQuery != null) {
+            mQuery.unsubscribe(this);
+            mQuery = null;
+        }
+
+        releasePending();
+        if (mSnapshot != null) {
+            mSnapshot.release();
+            mSnapshot = null;
+        }
+        mResult = null;
+    }
+
+    private void releasePending() {
+        if (mPendingSnapshot != null) {
+            mPendingSnapshot.release();
+            mPendingSnapshot = null;
+            mPendingResult = null;
+        }
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(prefix);
+        writer.print("mUri=");
+        writer.println(mUri);
+        writer.print(prefix);
+        writer.print("mProjection=");
+        writer.println(Arrays.toString(mProjection));
+        writer.print(prefix);
+        writer.print("mSelection=");
+        writer.println(mSelection);
+        writer.print(prefix);
+        writer.print("mSelectionArgs=");
+        writer.println(Arrays.toString(mSelectionArgs));
+        writer.print(prefix);
+        writer.print("mSortOrder=");
+        writer.println(mSortOrder);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.sdk.persistence.loaders;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query shared between subscribers of SharedQueryRegistry. Each load
+ * produces a Snapshot: one cursor and the results of all transformations
+ * registered at the moment. Snapshots are reference counted: the cursor
+ * is closed only when no subscriber holds results which are backed by it.
+ * <p/>
+ * Transformations must not close the cursor they are given, since
+ * the same cursor is passed to every transformation of the query.
+ */
+final class SharedQuery {
+    private final SharedQueryRegistry mRegistry;
+    private final String mKey;
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final String mSortOrder;
+
+    private final ContentObserver mObserver;
+    private final Runnable mLoadRunnable;
+    private final Map<Transformation<?>, Transformation<?>> mTransformations;
+    private final Map<Subscriber<?>, Transformation<?>> mSubscribers;
+
+    private Snapshot mSnapshot;
+    private long mLastLoadTime;
+    private boolean mLoading;
+    private boolean mScheduled;
+    private boolean mDirty;
+    private boolean mClosed;
+
+    SharedQuery(SharedQueryRegistry registry, String key, Uri uri, String[] projection,
+                String selection, String[] selectionArgs, String sortOrder) {
+        mRegistry = registry;
+        mKey = key;
+        mUri = uri;
+        mProjection = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mSortOrder = sortOrder;
+
+        mTransformations = new LinkedHashMap<>();
+        mSubscribers = new LinkedHashMap<>();
+        mLoadRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mScheduled = false;
+                load();
+            }
+        };
+        mObserver = new ContentObserver(registry.getHandler()) {
+            @Override
+            public boolean deliverSelfNotifications() {
+                return true;
+            }
+
+            @Override
+            public void onChange(boolean selfChange) {
+                scheduleLoad();
+            }
+        };
+        registry.getContext().getContentResolver()
+                .registerContentObserver(uri, true, mObserver);
+    }
+
+    String getKey() {
+        return mKey;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> void subscribe(Transformation<T> transformation, Subscriber<T> subscriber) {
+        // transformations are matched by equals(), which is identity
+        // unless the transformation overrides it: differently configured
+        // instances of the same class never share their results
+        Transformation<?> type = mTransformations.get(transformation);
+        if (type == null) {
+            type = transformation;
+        }
+        mSubscribers.put(subscriber, type);
+
+        if (!mTransformations.containsKey(type)) {
+            mTransformations.put(type, type);
+            // new transformation has to be applied right away,
+            // there is no reason to wait for the throttle window
+            requestLoad();
+        } else if (mSnapshot != null && mSnapshot.contains(type)) {
+            subscriber.onResult(mSnapshot, (T) mSnapshot.get(type));
+        } else {
+            requestLoad();
+        }
+    }
+
+    void unsubscribe(Subscriber<?> subscriber) {
+        Transformation<?> type = mSubscribers.remove(subscriber);
+        if (type != null && !mSubscribers.containsValue(type)) {
+            mTransformations.remove(type);
+        }
+
+        if (mSubscribers.isEmpty()) {
+            close();
+        }
+    }
+
+    /* Reloads query bypassing throttling */
+    void requestLoad() {
+        if (mScheduled) {
+            mRegistry.getHandler().removeCallbacks(mLoadRunnable);
+            mScheduled = false;
+        }
+        load();
+    }
+
+    private void scheduleLoad() {
+        if (mScheduled || mClosed) {
+            return;
+        }
+
+        if (mLoading) {
+            // query will be reloaded once
+            // the current load is finished
+            mDirty = true;
+            return;
+        }
+
+        mScheduled = true;
+        long delay = mLastLoadTime + mRegistry.getThrottle() - SystemClock.uptimeMillis();
+        mRegistry.getHandler().postDelayed(mLoadRunnable, Math.max(0, delay));
+    }
+
+    private void load() {
+        if (mClosed) {
+            return;
+        }
+
+        if (mLoading) {
+            mDirty = true;
+            return;
+        }
+
+        mLoading = true;
+        mDirty = false;
+        mLastLoadTime = SystemClock.uptimeMillis();
+
+        final Context context = mRegistry.getContext();
+        final List<Transformation<?>> transformations =
+                new ArrayList<>(mTransformations.keySet());
+        mRegistry.getExecutor().execute(new Runnable() {
+
+            /* Runs on a worker thread */
+            @Override
+            public void run() {
+                Cursor cursor = context.getContentResolver().query(
+                        mUri, mProjection, mSelection, mSelectionArgs, mSortOrder
+                );
+                if (cursor != null) {
+                    // Ensure the cursor window is filled
+                    cursor.getCount();
+                }
+
+                Map<Transformation<?>, Object> results = new HashMap<>();
+                for (Transformation<?> transformation : transformations) {
+                    results.put(transformation, transformation.transform(context, cursor));
+                }
+
+                final Snapshot snapshot = new Snapshot(cursor, results);
+                mRegistry.getHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoadFinished(snapshot);
+                    }
+                });
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onLoadFinished(Snapshot snapshot) {
+        mLoading = false;
+
+        snapshot.acquire();
+        if (mClosed) {
+            snapshot.release();
+            return;
+        }
+
+        Snapshot oldSnapshot = mSnapshot;
+        mSnapshot = snapshot;
+
+        List<Map.Entry<Subscriber<?>, Transformation<?>>> subscribers =
+                new ArrayList<>(mSubscribers.entrySet());
+        for (Map.Entry<Subscriber<?>, Transformation<?>> entry : subscribers) {
+            if (snapshot.contains(entry.getValue())) {
+                ((Subscriber<Object>) entry.getKey())
+                        .onResult(snapshot, snapshot.get(entry.getValue()));
+            }
+        }
+
+        if (oldSnapshot != null) {
+            oldSnapshot.release();
+        }
+
+        if (mDirty || !snapshot.containsAll(mTransformations.keySet())) {
+            scheduleLoad();
+        }
+    }
+
+    private void close() {
+        mClosed = true;
+        mRegistry.getHandler().removeCallbacks(mLoadRunnable);
+        mRegistry.getContext().getContentResolver()
+                .unregisterContentObserver(mObserver);
+        mRegistry.remove(this);
+
+        if (mSnapshot != null) {
+            mSnapshot.release();
+            mSnapshot = null;
+        }
+    }
+
+    interface Subscriber<T> {
+        void onResult(Snapshot snapshot, T result);
+    }
+
+    static final class Snapshot {
+        private final Cursor mCursor;
+        private final Map<Transformation<?>, Object> mResults;
+        private int mReferences;
+
+        Snapshot(Cursor cursor, Map<Transformation<?>, Object> results) {
+            mCursor = cursor;
+            mResults = results;
+        }
+
+        boolean contains(Transformation<?> type) {
+            return mResults.containsKey(type);
+        }
+
+        boolean containsAll(Iterable<Transformation<?>> types) {
+            for (Transformation<?> type : types) {
+                if (!contains(type)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Object get(Transformation<?> type) {
+            return mResults.get(type);
+        }
+
+        void acquire() {
+            mReferences++;
+        }
+
+        void release() {
+            mReferences--;
+            if (mReferences <= 0 && mCursor != null && !mCursor.isClosed()) {
+                mCursor.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.dhis2.mobile.sdk.persistence.loaders;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Keeps one SharedQuery per distinct (uri, projection, selection,
+ * selectionArgs, sortOrder). All subscribers of the same query share
+ * one cursor, and subscribers which use equal Transformation instances
+ * share the same transformed result. Change notifications are coalesced:
+ * a query is not reloaded more often than once per throttle window.
+ * <p/>
+ * Must be accessed from the UI thread only.
+ */
+public final class SharedQueryRegistry {
+    private static final long DEFAULT_THROTTLE_MILLIS = 500;
+    private static SharedQueryRegistry mRegistry;
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final Executor mExecutor;
+    private final Map<String, SharedQuery> mQueries;
+    private long mThrottleMillis;
+
+    private SharedQueryRegistry(Context context) {
+        mContext = context;
+        mHandler = new Handler(Looper.getMainLooper());
+        mExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+        mQueries = new HashMap<>();
+        mThrottleMillis = DEFAULT_THROTTLE_MILLIS;
+    }
+
+    public static synchronized SharedQueryRegistry getInstance(Context context) {
+        isNull(context, "Context object must not be null");
+        if (mRegistry == null) {
+            mRegistry = new SharedQueryRegistry(context.getApplicationContext());
+        }
+        return mRegistry;
+    }
+
+    private static String buildKey(Uri uri, String[] projection, String selection,
+                                   String[] selectionArgs, String sortOrder) {
+        return uri + "|" + Arrays.toString(projection) + "|" + selection + "|" +
+                Arrays.toString(selectionArgs) + "|" + sortOrder;
+    }
+
+    /**
+     * Minimal interval between two reloads of the same query,
+     * caused by change notifications.
+     */
+    public void setThrottle(long throttleMillis) {
+        if (throttleMillis < 0) {
+            throw new IllegalArgumentException("Throttle must not be negative");
+        }
+        mThrottleMillis = throttleMillis;
+    }
+
+    public long getThrottle() {
+        return mThrottleMillis;
+    }
+
+    public int getQueryCount() {
+        return mQueries.size();
+    }
+
+    <T> SharedQuery subscribe(Uri uri, String[] projection, String selection,
+                              String[] selectionArgs, String sortOrder,
+                              Transformation<T> transformation, SharedQuery.Subscriber<T> subscriber) {
+        String key = buildKey(uri, projection, selection, selectionArgs, sortOrder);
+        SharedQuery query = mQueries.get(key);
+        if (query == null) {
+            query = new SharedQuery(this, key, uri, projection,
+                    selection, selectionArgs, sortOrder);
+            mQueries.put(key, query);
+        }
+        query.subscribe(transformation, subscriber);
+        return query;
+    }
+
+    void remove(SharedQuery query) {
+        mQueries.remove(query.getKey());
+    }
+
+    Context getContext() {
+        return mContext;
+    }
+
+    Handler getHandler() {
+        return mHandler;
+    }
+
+    Executor getExecutor() {
+        return mExecutor;
+    }
+}
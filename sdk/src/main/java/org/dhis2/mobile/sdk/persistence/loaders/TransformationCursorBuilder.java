@@ -63,4 +63,20 @@ public class TransformationCursorBuilder<T> {
                 mSelectionArgs, mSortOrder, mTransformation
         );
     }
+
+    /**
+     * Builds loader which shares its query and result with other loaders,
+     * see SharedQueryRegistry. Transformation must not close the cursor.
+     */
+    public SharedCursorLoader<T> buildShared(Context context) {
+        isNull(context, "Context object must not be null");
+        isNull(mUri, "Uri object must not be null");
+        isNull(mProjection, "String[] projection object must not be null");
+        isNull(mTransformation, "Transformation object must not be null");
+
+        return new SharedCursorLoader<>(
+                context, mUri, mProjection, mSelection,
+                mSelectionArgs, mSortOrder, mTransformation
+        );
+    }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.persistence.models;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resume token of metadata synchronization. Rows persisted by completed
+ * chunks are recognized on retry by their lastUpdated field, so token has
+ * to carry only what database cannot: data sets assigned to organisation
+ * units which were already stored, but whose relationships were not, and
+ * base lists produced by finished stages, so retry can skip those stages.
+ */
+public final class SyncCheckpoint {
+    private Stage stage;
+    private String scope;
+    private final Map<String, Set<String>> unitDataSets;
+    private final Set<String> unitIds;
+    private final Set<String> rootIds;
+    private final Set<String> dataSetIds;
+
+    public SyncCheckpoint(Stage stage, Map<String, Set<String>> unitDataSets) {
+        this.stage = stage;
+        this.unitDataSets = unitDataSets != null ?
+                unitDataSets : new HashMap<String, Set<String>>();
+        this.unitIds = new HashSet<>();
+        this.rootIds = new HashSet<>();
+        this.dataSetIds = new HashSet<>();
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public void setStage(Stage stage) {
+        this.stage = stage;
+    }
+
+    /**
+     * Sync scope the base lists belong to. Lists of other scope are not re-used.
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    public void setScope(String scope) {
+        this.scope = scope;
+    }
+
+    public Map<String, Set<String>> getUnitDataSets() {
+        return unitDataSets;
+    }
+
+    public void putUnitDataSets(String orgUnitId, Set<String> dataSetIds) {
+        unitDataSets.put(orgUnitId, dataSetIds);
+    }
+
+    /**
+     * Ids of all organisation units in scope, known once units are stored.
+     */
+    public Set<String> getUnitIds() {
+        return unitIds;
+    }
+
+    public void setUnitIds(Set<String> unitIds) {
+        this.unitIds.clear();
+        this.unitIds.addAll(unitIds);
+    }
+
+    /**
+     * Ids of units shown as roots of hierarchy, known once units are stored.
+     */
+    public Set<String> getRootIds() {
+        return rootIds;
+    }
+
+    public void setRootIds(Set<String> rootIds) {
+        this.rootIds.clear();
+        this.rootIds.addAll(rootIds);
+    }
+
+    /**
+     * Ids of all data sets in scope, known once data sets are stored.
+     */
+    public Set<String> getDataSetIds() {
+        return dataSetIds;
+    }
+
+    public void setDataSetIds(Set<String> dataSetIds) {
+        this.dataSetIds.clear();
+        this.dataSetIds.addAll(dataSetIds);
+    }
+
+    public enum Stage {
+        BASE_LISTS,
+        ORGANISATION_UNITS,
+        DATA_SETS,
+        RELATIONSHIPS,
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.dhis2.mobile.sdk.persistence.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.dhis2.mobile.sdk.utils.Preconditions.isNull;
+
+/**
+ * Part of organisation unit hierarchy which is kept on device.
+ * Units outside of scope are not downloaded, and units which
+ * fall out of it after scope change are removed by the next sync.
+ * Units which were stored under previous scope are not downloaded
+ * in full again, unless they were updated on server.
+ */
+public final class SyncScope {
+    private final Type type;
+    private final int maxLevel;
+    private final List<String> unitIds;
+    private final int days;
+
+    private SyncScope(Type type, int maxLevel, List<String> unitIds, int days) {
+        this.type = type;
+        this.maxLevel = maxLevel;
+        this.unitIds = Collections.unmodifiableList(new ArrayList<>(unitIds));
+        this.days = days;
+    }
+
+    /**
+     * Hierarchy below units assigned to user.
+     */
+    public static SyncScope assignedUnits() {
+        return new SyncScope(Type.ASSIGNED_UNITS, 0, Collections.<String>emptyList(), 0);
+    }
+
+    /**
+     * Hierarchy below units assigned to user, down to
+     * given level, where the root of hierarchy is level 1.
+     */
+    public static SyncScope maxLevel(int maxLevel) {
+        if (maxLevel <= 0) {
+            throw new IllegalArgumentException("Level must be positive");
+        }
+        return new SyncScope(Type.MAX_LEVEL, maxLevel, Collections.<String>emptyList(), 0);
+    }
+
+    /**
+     * Hierarchy below given units.
+     */
+    public static SyncScope subtrees(List<String> unitIds) {
+        isNull(unitIds, "List of unit ids must not be null");
+        if (unitIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one unit is required");
+        }
+        return new SyncScope(Type.SUBTREES, 0, unitIds, 0);
+    }
+
+    /**
+     * Only units which were used for data entry within given number of days.
+     * Until there are such units, hierarchy below assigned units is kept.
+     */
+    public static SyncScope recentDataEntry(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("Number of days must be positive");
+        }
+        return new SyncScope(Type.RECENT_DATA_ENTRY, 0, Collections.<String>emptyList(), days);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    public List<String> getUnitIds() {
+        return unitIds;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+
+        if (!(object instanceof SyncScope)) {
+            return false;
+        }
+
+        SyncScope scope = (SyncScope) object;
+        return type == scope.type && maxLevel == scope.maxLevel &&
+                days == scope.days && unitIds.equals(scope.unitIds);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type.hashCode();
+        result = 31 * result + maxLevel;
+        result = 31 * result + unitIds.hashCode();
+        result = 31 * result + days;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncScope[type=" + type + ", maxLevel=" + maxLevel +
+                ", unitIds=" + unitIds + ", days=" + days + "]";
+    }
+
+    public enum Type {
+        ASSIGNED_UNITS,
+        MAX_LEVEL,
+        SUBTREES,
+        RECENT_DATA_ENTRY,
+    }
+}
@@ -61,6 +61,21 @@ public final class DbUtils {
         return ids;
     }
 
+    /**
+     * Splits list into consecutive sublists of at most chunkSize items.
+     */
+    public static <T> List<List<T>> partition(List<T> items, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += chunkSize) {
+            chunks.add(items.subList(start, Math.min(start + chunkSize, items.size())));
+        }
+        return chunks;
+    }
+
     public static <T extends BaseIdentifiableEntity> void print(List<T> items) {
         if (items != null && items.size() > 0) {
             for (BaseIdentifiableEntity item : items) {